@@ -0,0 +1,119 @@
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Summarizes the bank events of a JDK Flight Recorder recording:
+ * <pre>
+ * java scripts/JfrSummary.java bank.jfr [number of slowest transfers, 10 by default]
+ * </pre>
+ * Prints count and duration percentiles per event type and per outcome, crypto operations,
+ * transfer lock waits by amount range and the slowest transfers with their card ids.
+ */
+public class JfrSummary {
+
+    private static final String PREFIX = "com.example.bankcards.";
+    private static final String TRANSFER = PREFIX + "Transfer";
+    private static final String CRYPTO = PREFIX + "CardNumberCrypto";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java scripts/JfrSummary.java <recording.jfr> [slowest transfers]");
+            System.exit(1);
+        }
+        int slowest = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        Map<String, List<RecordedEvent>> eventsByType = new TreeMap<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(Path.of(args[0]))) {
+            String type = event.getEventType().getName();
+            if (type.startsWith(PREFIX)) {
+                eventsByType.computeIfAbsent(type, t -> new ArrayList<>()).add(event);
+            }
+        }
+        if (eventsByType.isEmpty()) {
+            System.out.println("No " + PREFIX + "* events, was the recording started with them enabled?");
+            return;
+        }
+
+        for (Map.Entry<String, List<RecordedEvent>> entry : eventsByType.entrySet()) {
+            String type = entry.getKey();
+            List<RecordedEvent> events = entry.getValue();
+            System.out.println("== " + type.substring(PREFIX.length()));
+            printHeader();
+            printRow("all", durations(events, RecordedEvent::getDuration));
+            printGroups(events, "outcome");
+            if (type.equals(CRYPTO)) {
+                printGroups(events, "operation");
+            }
+            if (type.equals(TRANSFER)) {
+                printGroups(events, "mode");
+                System.out.println();
+                System.out.println("Lock wait by amount");
+                printHeader();
+                printRow("all", durations(events, event -> event.getDuration("lockWait")));
+                groupBy(events, "amountBucket").forEach((bucket, group) ->
+                        printRow(bucket, durations(group, event -> event.getDuration("lockWait"))));
+                printSlowest(events, slowest);
+            }
+            System.out.println();
+        }
+    }
+
+    private static void printGroups(List<RecordedEvent> events, String field) {
+        groupBy(events, field).forEach((value, group) ->
+                printRow(field + "=" + value, durations(group, RecordedEvent::getDuration)));
+    }
+
+    private static void printSlowest(List<RecordedEvent> transfers, int count) {
+        System.out.println();
+        System.out.println("Slowest transfers");
+        System.out.printf("%-30s %10s %10s %8s %10s %10s %-12s %s%n",
+                "start", "ms", "lock ms", "attempts", "from card", "to card", "amount", "outcome");
+        transfers.stream()
+                .sorted(Comparator.comparing((RecordedEvent event) -> event.getDuration()).reversed())
+                .limit(count)
+                .forEach(event -> System.out.printf("%-30s %10.2f %10.2f %8d %10d %10d %-12s %s%n",
+                        event.getStartTime(),
+                        millis(event.getDuration()),
+                        millis(event.getDuration("lockWait")),
+                        event.getInt("attempts"),
+                        event.getLong("fromCardId"),
+                        event.getLong("toCardId"),
+                        event.getString("amountBucket"),
+                        event.getString("outcome")));
+    }
+
+    private static Map<String, List<RecordedEvent>> groupBy(List<RecordedEvent> events, String field) {
+        return events.stream().collect(Collectors.groupingBy(
+                event -> Objects.toString(event.getValue(field)), TreeMap::new, Collectors.toList()));
+    }
+
+    private static long[] durations(List<RecordedEvent> events, Function<RecordedEvent, Duration> duration) {
+        return events.stream().mapToLong(event -> duration.apply(event).toNanos()).sorted().toArray();
+    }
+
+    private static void printHeader() {
+        System.out.printf("%-28s %10s %10s %10s %10s %10s%n", "", "count", "p50 ms", "p99 ms", "p999 ms", "max ms");
+    }
+
+    private static void printRow(String name, long[] sortedNanos) {
+        System.out.printf("%-28s %10d %10.3f %10.3f %10.3f %10.3f%n", name, sortedNanos.length,
+                percentile(sortedNanos, 50), percentile(sortedNanos, 99), percentile(sortedNanos, 99.9),
+                sortedNanos[sortedNanos.length - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sortedNanos, double percentile) {
+        int index = (int) Math.ceil(percentile / 100 * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1e6;
+    }
+
+    private static double millis(Duration duration) {
+        return duration.toNanos() / 1e6;
+    }
+}
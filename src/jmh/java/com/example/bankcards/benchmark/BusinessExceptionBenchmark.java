@@ -0,0 +1,68 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.dto.ExceptionResponse;
+import com.example.bankcards.exception.CardNotFoundException;
+import com.example.bankcards.exception.GlobalExceptionHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a 4xx response: a {@link CardNotFoundException} thrown {@code depth} frames below the handler,
+ * caught, and turned into an {@link ExceptionResponse} by {@link GlobalExceptionHandler}. A request to
+ * a controller passes through about 150 frames of filters, proxies and dispatcher code.
+ * <p>
+ * withStackTrace throws a plain RuntimeException instead, which captures its stack the way the
+ * business exceptions did before they became stackless, and hands the handler an exception with the
+ * same message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BusinessExceptionBenchmark {
+
+    @Param({"20", "150"})
+    private int depth;
+
+    private GlobalExceptionHandler handler;
+
+    @Setup
+    public void setUp() {
+        handler = new GlobalExceptionHandler(new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public ResponseEntity<ExceptionResponse> stackless() {
+        try {
+            throwAt(depth, false);
+            throw new AssertionError();
+        } catch (CardNotFoundException e) {
+            return handler.handleException(e);
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<ExceptionResponse> withStackTrace() {
+        try {
+            throwAt(depth, true);
+            throw new AssertionError();
+        } catch (RuntimeException e) {
+            return handler.handleException(new CardNotFoundException(e.getMessage()));
+        }
+    }
+
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    private static void throwAt(int depth, boolean stackTrace) {
+        if (depth > 0) {
+            throwAt(depth - 1, stackTrace);
+            return;
+        }
+        String message = "Card not found";
+        throw stackTrace ? new RuntimeException(message) : new CardNotFoundException(message);
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.util.CardNumberCrypto;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call cost of {@link CardNumberCrypto}: the pooled ciphers against a new
+ * {@code Cipher.getInstance} + {@code init} on every call, as it was done before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardNumberCryptoBenchmark {
+
+    private static final String SECRET = "bankrestcardcard";
+    private static final String CARD_NUMBER = "1234567812345678";
+
+    private CardNumberCrypto cardNumberCrypto;
+    private SecretKeySpec secretKey;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private String gcmCiphertext;
+    private String ecbCiphertext;
+    // Not a constant, so the JIT cannot fold the masking
+    private String cardNumber;
+
+    @Setup
+    public void setUp() throws Exception {
+        cardNumberCrypto = new CardNumberCrypto(SECRET, "bankrestcardhash");
+        secretKey = new SecretKeySpec(SECRET.getBytes(), "AES");
+        gcmCiphertext = cardNumberCrypto.encrypt(CARD_NUMBER);
+        ecbCiphertext = encryptEcbPerCall(CARD_NUMBER);
+        cardNumber = CARD_NUMBER;
+    }
+
+    @Benchmark
+    public String encryptEcbPerCallInstance() throws Exception {
+        return encryptEcbPerCall(CARD_NUMBER);
+    }
+
+    @Benchmark
+    public String decryptEcbPerCallInstance() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(Cipher.DECRYPT_MODE, secretKey);
+        return new String(cipher.doFinal(Base64.getDecoder().decode(ecbCiphertext)));
+    }
+
+    @Benchmark
+    public String decryptEcbPooled() {
+        return cardNumberCrypto.decrypt(ecbCiphertext);
+    }
+
+    @Benchmark
+    public String encryptGcmPerCallInstance() throws Exception {
+        byte[] iv = new byte[12];
+        secureRandom.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(128, iv));
+        byte[] encrypted = cipher.doFinal(CARD_NUMBER.getBytes());
+        return "v2:" + Base64.getEncoder().encodeToString(
+                ByteBuffer.allocate(iv.length + encrypted.length).put(iv).put(encrypted).array());
+    }
+
+    @Benchmark
+    public String encryptGcmPooled() {
+        return cardNumberCrypto.encrypt(CARD_NUMBER);
+    }
+
+    @Benchmark
+    public String decryptGcmPerCallInstance() throws Exception {
+        byte[] decoded = Base64.getDecoder().decode(gcmCiphertext.substring(3));
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(128, decoded, 0, 12));
+        return new String(cipher.doFinal(decoded, 12, decoded.length - 12));
+    }
+
+    @Benchmark
+    public String decryptGcmPooled() {
+        return cardNumberCrypto.decrypt(gcmCiphertext);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String decryptGcmPooledContended() {
+        return cardNumberCrypto.decrypt(gcmCiphertext);
+    }
+
+    @Benchmark
+    public String hashPooled() {
+        return cardNumberCrypto.hash(CARD_NUMBER);
+    }
+
+    @Benchmark
+    public String transformToMaskedNumber() {
+        return cardNumberCrypto.transformToMaskedNumber(cardNumber);
+    }
+
+    private String encryptEcbPerCall(String value) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, secretKey);
+        return Base64.getEncoder().encodeToString(cipher.doFinal(value.getBytes()));
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.util.CardNumberGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call cost of {@link CardNumberGenerator#generateCardNumber}, alone and with
+ * several threads drawing from its shared {@code Random} at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardNumberGeneratorBenchmark {
+
+    @Benchmark
+    public String generateCardNumber() {
+        return CardNumberGenerator.generateCardNumber();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String generateCardNumberContended() {
+        return CardNumberGenerator.generateCardNumber();
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.bankcards.benchmark;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.enums.Role;
+import com.example.bankcards.service.TokenService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call cost of issuing and verifying access tokens with {@link TokenService}:
+ * HMAC signing, JSON encoding of the claims, and on validation decoding and signature checking.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenServiceBenchmark {
+
+    private TokenService tokenService;
+    private User user;
+    private String accessToken;
+
+    @Setup
+    public void setUp() {
+        tokenService = new TokenService("bankrest", "bankrest", "1", new String[0], new String[0]);
+        user = new User("benchmark_user", "password", Role.USER);
+        user.setId(2L);
+        accessToken = tokenService.generateAccessToken(user);
+    }
+
+    @Benchmark
+    public String generateAccessToken() {
+        return tokenService.generateAccessToken(user);
+    }
+
+    @Benchmark
+    public DecodedJWT validateAccessToken() {
+        return tokenService.validateAccessToken(accessToken);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.BankRestApplication;
+import com.example.bankcards.dto.TransactionRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.enums.CardStatus;
+import com.example.bankcards.enums.Role;
+import com.example.bankcards.exception.TransferConflictException;
+import com.example.bankcards.repository.CardsRepository;
+import com.example.bankcards.repository.UsersRepository;
+import com.example.bankcards.service.TransactionsService;
+import com.example.bankcards.util.CardNumberCrypto;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end cost of {@link TransactionsService#transfer} in process, against the in-memory H2
+ * database of the tests: card lookups by hash, row locks, balance updates and the transaction row.
+ * The application context is started once per fork, without the web server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferBenchmark {
+
+    private static final String FROM_CARD = "4000000000000001";
+    private static final String TO_CARD = "4000000000000002";
+
+    @Param({"PESSIMISTIC", "OPTIMISTIC"})
+    public String mode;
+
+    private ConfigurableApplicationContext context;
+    private TransactionsService transactionsService;
+    private TransactionRequest request;
+    private Long userId;
+
+    @Setup
+    public void setUp() {
+        SpringApplication application = new SpringApplication(BankRestApplication.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        application.setAdditionalProfiles("h2");
+        context = application.run("--spring.transactions.transfer.mode=" + mode);
+
+        CardNumberCrypto cardNumberCrypto = context.getBean(CardNumberCrypto.class);
+        CardsRepository cardsRepository = context.getBean(CardsRepository.class);
+        User user = context.getBean(UsersRepository.class).save(new User("benchmark_user", "password", Role.USER));
+        userId = user.getId();
+        for (String cardNumber : new String[]{FROM_CARD, TO_CARD}) {
+            cardsRepository.save(new Card(
+                    cardNumberCrypto.encrypt(cardNumber),
+                    cardNumberCrypto.hash(cardNumber),
+                    CardNumberCrypto.lastFour(cardNumber),
+                    user,
+                    new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(365)),
+                    CardStatus.ACTIVE,
+                    new BigDecimal("1000000000.00")
+            ));
+        }
+
+        transactionsService = context.getBean(TransactionsService.class);
+        request = new TransactionRequest();
+        request.setFromCard(FROM_CARD);
+        request.setToCard(TO_CARD);
+        request.setAmount(new BigDecimal("1.00"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void transfer() {
+        transactionsService.transfer(request, userId);
+    }
+
+    // Every thread moves money between the same two cards, so transfers wait for each other's row locks
+    // or retry on version conflicts. Optimistic transfers that run out of attempts are counted as done
+    @Benchmark
+    @Threads(4)
+    public boolean transferContended() {
+        try {
+            transactionsService.transfer(request, userId);
+            return true;
+        } catch (TransferConflictException e) {
+            return false;
+        }
+    }
+}
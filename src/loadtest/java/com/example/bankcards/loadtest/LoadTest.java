@@ -0,0 +1,387 @@
+package com.example.bankcards.loadtest;
+
+import com.example.bankcards.BankRestApplication;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.enums.CardStatus;
+import com.example.bankcards.enums.Role;
+import com.example.bankcards.repository.CardsRepository;
+import com.example.bankcards.repository.UsersRepository;
+import com.example.bankcards.util.CardNumberCrypto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * HTTP load generator for release qualification. Starts the application on a random port against the
+ * in-memory H2 database of the tests (PostgreSQL mode), seeds users and cards through the repositories,
+ * logs every user in once and then drives a weighted mix of requests from client threads:
+ * <pre>
+ * mvn -P load-test test-compile exec:exec -Dloadtest.args="--users=200 --mix=cards=50,transfer=50"
+ * </pre>
+ * Options (defaults in brackets): users [100], cards-per-user [4], concurrency [16] client threads,
+ * warmup-seconds [10], duration-seconds [30], rate [0] total requests per second,
+ * mix [login=2,cards=38,balance=40,transfer=20], profiles [] added to development and h2,
+ * out [] path of a JSON copy of the report.
+ * <p>
+ * With rate 0 every client thread sends its next request as soon as the previous one is answered.
+ * With a rate the requests are scheduled at fixed intervals and latency is measured from the scheduled
+ * time, so a stalled server shows up in the percentiles instead of just slowing the clients down.
+ * Responses other than 2xx are counted as errors, their latency is recorded as well.
+ */
+public class LoadTest {
+
+    private static final String PASSWORD = "load_test_password";
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000000000.00");
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    enum Operation {
+        LOGIN("login"),
+        CARDS("cards"),
+        BALANCE("balance"),
+        TRANSFER("transfer");
+
+        private final String option;
+
+        Operation(String option) {
+            this.option = option;
+        }
+
+        static Operation fromOption(String option) {
+            for (Operation operation : values()) {
+                if (operation.option.equals(option)) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("Unknown operation " + option + " in mix");
+        }
+    }
+
+    private record SeededUser(String username, List<Long> cardIds, List<String> cardNumbers) {
+    }
+
+    private final Map<String, String> options;
+    private final int users;
+    private final int cardsPerUser;
+    private final int concurrency;
+    private final int warmupSeconds;
+    private final int durationSeconds;
+    private final int rate;
+    private final Operation[] mix;
+
+    private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+    private final AtomicLongArray errors = new AtomicLongArray(Operation.values().length);
+
+    private String baseUrl;
+    private List<SeededUser> seededUsers;
+    // Latest access token of every user, replaced by the login requests of the mix
+    private AtomicReferenceArray<String> accessTokens;
+    private volatile boolean warmedUp;
+
+    LoadTest(Map<String, String> options) {
+        this.options = options;
+        this.users = Integer.parseInt(options.getOrDefault("users", "100"));
+        this.cardsPerUser = Integer.parseInt(options.getOrDefault("cards-per-user", "4"));
+        this.concurrency = Integer.parseInt(options.getOrDefault("concurrency", "16"));
+        this.warmupSeconds = Integer.parseInt(options.getOrDefault("warmup-seconds", "10"));
+        this.durationSeconds = Integer.parseInt(options.getOrDefault("duration-seconds", "30"));
+        this.rate = Integer.parseInt(options.getOrDefault("rate", "0"));
+        this.mix = parseMix(options.getOrDefault("mix", "login=2,cards=38,balance=40,transfer=20"));
+        if (cardsPerUser < 2 && Arrays.asList(mix).contains(Operation.TRANSFER)) {
+            throw new IllegalArgumentException("Transfers need at least 2 cards per user");
+        }
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new Recorder(MAX_LATENCY_MICROS, 3));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --option=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        new LoadTest(options).run();
+    }
+
+    void run() throws Exception {
+        List<String> profiles = new ArrayList<>(List.of("development", "h2"));
+        String extraProfiles = options.getOrDefault("profiles", "");
+        if (!extraProfiles.isBlank()) {
+            profiles.addAll(List.of(extraProfiles.split(",")));
+        }
+
+        SpringApplication application = new SpringApplication(BankRestApplication.class);
+        try (ConfigurableApplicationContext context = application.run(
+                "--server.port=0",
+                "--spring.profiles.active=" + String.join(",", profiles),
+                "--spring.jpa.properties.hibernate.show_sql=false"
+        )) {
+            baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            seed(context);
+            logInAll();
+
+            long started = System.nanoTime();
+            long warmupEnd = started + TimeUnit.SECONDS.toNanos(warmupSeconds);
+            long end = warmupEnd + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+            ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int client = 0; client < concurrency; client++) {
+                int clientIndex = client;
+                futures.add(clients.submit(() -> drive(clientIndex, started, end)));
+            }
+
+            sleepUntil(warmupEnd);
+            // Drops the latencies recorded so far
+            recorders.values().forEach(Recorder::getIntervalHistogram);
+            warmedUp = true;
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            clients.shutdown();
+
+            report(String.join(",", profiles));
+        }
+    }
+
+    private void seed(ConfigurableApplicationContext context) {
+        UsersRepository usersRepository = context.getBean(UsersRepository.class);
+        CardsRepository cardsRepository = context.getBean(CardsRepository.class);
+        CardNumberCrypto cardNumberCrypto = context.getBean(CardNumberCrypto.class);
+        // All users share one password, so it is hashed once
+        String passwordHash = context.getBean(PasswordEncoder.class).encode(PASSWORD);
+        Date expiryDate = new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(3 * 365));
+
+        seededUsers = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            User user = usersRepository.save(new User(String.format("load_user_%06d", i), passwordHash, Role.USER));
+            List<Card> cards = new ArrayList<>(cardsPerUser);
+            List<String> cardNumbers = new ArrayList<>(cardsPerUser);
+            for (int j = 0; j < cardsPerUser; j++) {
+                String cardNumber = String.format("5%015d", (long) i * cardsPerUser + j);
+                cards.add(new Card(
+                        cardNumberCrypto.encrypt(cardNumber),
+                        cardNumberCrypto.hash(cardNumber),
+                        CardNumberCrypto.lastFour(cardNumber),
+                        user,
+                        expiryDate,
+                        CardStatus.ACTIVE,
+                        INITIAL_BALANCE
+                ));
+                cardNumbers.add(cardNumber);
+            }
+            List<Long> cardIds = cardsRepository.saveAll(cards).stream().map(Card::getId).toList();
+            seededUsers.add(new SeededUser(user.getUsername(), cardIds, cardNumbers));
+        }
+    }
+
+    private void logInAll() throws Exception {
+        accessTokens = new AtomicReferenceArray<>(users);
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            int userIndex = i;
+            futures.add(executor.submit(() -> {
+                HttpResponse<String> response = send(login(userIndex));
+                if (response.statusCode() != 200) {
+                    throw new IllegalStateException("Login of " + seededUsers.get(userIndex).username()
+                            + " failed with " + response.statusCode() + ": " + response.body());
+                }
+                accessTokens.set(userIndex, objectMapper.readTree(response.body()).get("accessToken").asText());
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+    }
+
+    private void drive(int clientIndex, long started, long end) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // Each client sends its share of the rate, starting at an offset so the clients do not send in bursts
+        long intervalNanos = rate > 0 ? TimeUnit.SECONDS.toNanos(concurrency) / rate : 0;
+        long scheduled = started + (intervalNanos * clientIndex) / concurrency;
+
+        while (true) {
+            long start;
+            if (intervalNanos > 0) {
+                sleepUntil(scheduled);
+                start = scheduled;
+                scheduled += intervalNanos;
+            } else {
+                start = System.nanoTime();
+            }
+            if (start >= end) {
+                return;
+            }
+
+            Operation operation = mix[random.nextInt(mix.length)];
+            int userIndex = random.nextInt(users);
+            boolean success;
+            try {
+                HttpResponse<String> response = send(request(operation, userIndex, random));
+                success = response.statusCode() / 100 == 2;
+                if (success && operation == Operation.LOGIN) {
+                    accessTokens.set(userIndex, objectMapper.readTree(response.body()).get("accessToken").asText());
+                }
+            } catch (IOException e) {
+                success = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+            recorders.get(operation).recordValue(Math.min(latencyMicros, MAX_LATENCY_MICROS));
+            if (!success && warmedUp) {
+                errors.incrementAndGet(operation.ordinal());
+            }
+        }
+    }
+
+    private HttpRequest request(Operation operation, int userIndex, ThreadLocalRandom random) {
+        SeededUser user = seededUsers.get(userIndex);
+        return switch (operation) {
+            case LOGIN -> login(userIndex);
+            case CARDS -> authorized(userIndex, "/cards/cards?page=0&limit=10").GET().build();
+            case BALANCE -> authorized(userIndex,
+                    "/cards/" + user.cardIds().get(random.nextInt(cardsPerUser)) + "/balance").GET().build();
+            case TRANSFER -> {
+                int from = random.nextInt(cardsPerUser);
+                int to = (from + 1 + random.nextInt(cardsPerUser - 1)) % cardsPerUser;
+                String body = String.format("{\"fromCard\":\"%s\",\"toCard\":\"%s\",\"amount\":1.00}",
+                        user.cardNumbers().get(from), user.cardNumbers().get(to));
+                yield authorized(userIndex, "/transactions/transfers")
+                        .header("Content-Type", "application/json")
+                        .method("PATCH", HttpRequest.BodyPublishers.ofString(body))
+                        .build();
+            }
+        };
+    }
+
+    private HttpRequest login(int userIndex) {
+        String body = String.format("{\"username\":\"%s\",\"password\":\"%s\"}",
+                seededUsers.get(userIndex).username(), PASSWORD);
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private HttpRequest.Builder authorized(int userIndex, String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Authorization", "Bearer " + accessTokens.get(userIndex));
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void report(String profiles) throws IOException {
+        Histogram total = new Histogram(MAX_LATENCY_MICROS, 3);
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("profiles", profiles);
+        json.put("users", users);
+        json.put("cardsPerUser", cardsPerUser);
+        json.put("concurrency", concurrency);
+        json.put("rate", rate);
+        json.put("durationSeconds", durationSeconds);
+        Map<String, Object> operations = new LinkedHashMap<>();
+        json.put("operations", operations);
+
+        PrintStream out = System.out;
+        out.printf("%nProfiles %s, %d users x %d cards, %d clients, %s, %ds measured after %ds warmup%n",
+                profiles, users, cardsPerUser, concurrency, rate > 0 ? rate + " req/s" : "closed loop",
+                durationSeconds, warmupSeconds);
+        out.printf("%-10s %10s %8s %10s %10s %10s %10s %10s%n",
+                "operation", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        long totalErrors = 0;
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = recorders.get(operation).getIntervalHistogram();
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            long operationErrors = errors.get(operation.ordinal());
+            totalErrors += operationErrors;
+            total.add(histogram);
+            operations.put(operation.option, print(out, operation.option, histogram, operationErrors));
+        }
+        json.put("total", print(out, "total", total, totalErrors));
+
+        String outPath = options.get("out");
+        if (outPath != null) {
+            Files.writeString(Path.of(outPath), objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(json));
+            out.println("Report is saved to " + outPath);
+        }
+    }
+
+    private Map<String, Object> print(PrintStream out, String name, Histogram histogram, long errorCount) {
+        double throughput = (double) histogram.getTotalCount() / durationSeconds;
+        out.printf("%-10s %10d %8d %10.1f %10.2f %10.2f %10.2f %10.2f%n", name, histogram.getTotalCount(), errorCount,
+                throughput, millis(histogram, 50), millis(histogram, 99), millis(histogram, 99.9),
+                histogram.getMaxValue() / 1000.0);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("requests", histogram.getTotalCount());
+        result.put("errors", errorCount);
+        result.put("throughput", throughput);
+        result.put("p50Ms", millis(histogram, 50));
+        result.put("p99Ms", millis(histogram, 99));
+        result.put("p999Ms", millis(histogram, 99.9));
+        result.put("maxMs", histogram.getMaxValue() / 1000.0);
+        return result;
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private static Operation[] parseMix(String mix) {
+        List<Operation> weighted = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.split("=");
+            Operation operation = Operation.fromOption(parts[0].trim());
+            int weight = Integer.parseInt(parts[1].trim());
+            for (int i = 0; i < weight; i++) {
+                weighted.add(operation);
+            }
+        }
+        if (weighted.isEmpty()) {
+            throw new IllegalArgumentException("The mix has no operations");
+        }
+        return weighted.toArray(new Operation[0]);
+    }
+
+    private static void sleepUntil(long nanoTime) {
+        long remaining;
+        while ((remaining = nanoTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
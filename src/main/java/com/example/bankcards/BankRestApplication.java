@@ -1,9 +1,7 @@
 package com.example.bankcards;
 
-import org.modelmapper.ModelMapper;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.context.annotation.Bean;
 
 @SpringBootApplication
 public class BankRestApplication {
@@ -12,9 +10,4 @@ public class BankRestApplication {
         SpringApplication.run(BankRestApplication.class, args);
     }
 
-    @Bean
-    public ModelMapper modelMapper() {
-        return new ModelMapper();
-    }
-
 }
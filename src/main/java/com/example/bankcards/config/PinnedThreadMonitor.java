@@ -0,0 +1,84 @@
+package com.example.bankcards.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Streams the JFR jdk.VirtualThreadPinned events of this JVM into metrics while requests run on
+ * virtual threads. A virtual thread that blocks inside a synchronized block or a native frame keeps
+ * its carrier thread, so a JDBC driver, pool or crypto provider that does this under load limits
+ * throughput to the number of carriers.
+ * <p>
+ * bank.virtual-threads.pinned is a timer of the pinned durations tagged with the frame that blocked
+ * while pinned: the first frame outside the JDK, or the top frame when the whole stack is JDK code.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class PinnedThreadMonitor {
+
+    static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final List<String> JDK_PACKAGES = List.of("java.", "javax.", "jdk.", "sun.", "com.sun.");
+
+    private final MeterRegistry meterRegistry;
+    private final Duration threshold;
+    private RecordingStream recordingStream;
+
+    @Autowired
+    public PinnedThreadMonitor(
+            MeterRegistry meterRegistry,
+            @Value("${spring.threads.virtual.pinned-threshold-ms:20}") long thresholdMs
+    ) {
+        this.meterRegistry = meterRegistry;
+        this.threshold = Duration.ofMillis(thresholdMs);
+    }
+
+    @PostConstruct
+    public void start() {
+        recordingStream = new RecordingStream();
+        recordingStream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        recordingStream.onEvent(PINNED_EVENT, this::record);
+        recordingStream.startAsync();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (recordingStream != null) {
+            recordingStream.close();
+        }
+    }
+
+    void record(RecordedEvent event) {
+        meterRegistry.timer("bank.virtual-threads.pinned", "frame", pinningFrame(event.getStackTrace()))
+                .record(event.getDuration());
+    }
+
+    static String pinningFrame(RecordedStackTrace stackTrace) {
+        if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+            return "unknown";
+        }
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        for (RecordedFrame frame : frames) {
+            String className = frame.getMethod().getType().getName();
+            if (JDK_PACKAGES.stream().noneMatch(className::startsWith)) {
+                return describe(frame);
+            }
+        }
+        return describe(frames.get(0));
+    }
+
+    private static String describe(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName();
+    }
+}
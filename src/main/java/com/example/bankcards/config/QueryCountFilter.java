@@ -0,0 +1,139 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.util.QueryBudget;
+import com.example.bankcards.util.QueryCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Counts the SQL statements of every request with {@link QueryCounter}. The count is returned in the
+ * X-Query-Count header and recorded in the bank.http.server.queries summary per endpoint. Endpoints
+ * annotated with {@link QueryBudget} are checked against their budget after the request.
+ * <p>
+ * The budget can only be checked once the handler has run, when the response may already be committed.
+ * Strict mode is therefore a switch for tests, where MockMvc passes the exception to the test. A real
+ * server would only log it after the client received the response, so production counts the excess instead.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class QueryCountFilter extends OncePerRequestFilter {
+
+    public static final String QUERY_COUNT_HEADER = "X-Query-Count";
+
+    private final MeterRegistry meterRegistry;
+    private final boolean strictBudget;
+
+    @Autowired
+    public QueryCountFilter(
+            MeterRegistry meterRegistry,
+            @Value("${spring.queries.budget.strict:false}") boolean strictBudget
+    ) {
+        this.meterRegistry = meterRegistry;
+        this.strictBudget = strictBudget;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        QueryCountResponse countedResponse = new QueryCountResponse(response);
+        int queries;
+        QueryCounter.start();
+        try {
+            filterChain.doFilter(request, countedResponse);
+        } finally {
+            queries = QueryCounter.stop();
+        }
+        // Responses without a body were not written yet
+        countedResponse.setQueryCount(queries);
+
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+        meterRegistry.summary("bank.http.server.queries", "method", request.getMethod(), "uri", uri)
+                .record(queries);
+
+        Object handler = request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+        QueryBudget budget = handler instanceof HandlerMethod handlerMethod
+                ? handlerMethod.getMethodAnnotation(QueryBudget.class)
+                : null;
+        if (budget != null && queries > budget.value()) {
+            meterRegistry.counter("bank.http.server.query-budget.exceeded", "method", request.getMethod(), "uri", uri)
+                    .increment();
+            if (strictBudget) {
+                throw new IllegalStateException(request.getMethod() + " " + uri + " ran " + queries
+                        + " SQL statements, its query budget is " + budget.value());
+            }
+        }
+    }
+
+    // Sets the header right before the response is committed, with the statements counted up to then
+    private class QueryCountResponse extends HttpServletResponseWrapper {
+
+        private boolean headerSet;
+
+        QueryCountResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        void setQueryCount(int queries) {
+            if (!headerSet && !isCommitted()) {
+                setHeader(QUERY_COUNT_HEADER, String.valueOf(queries));
+                headerSet = true;
+            }
+        }
+
+        private void beforeCommit() {
+            setQueryCount(QueryCounter.current());
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            beforeCommit();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            beforeCommit();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            beforeCommit();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            beforeCommit();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            beforeCommit();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            beforeCommit();
+            super.sendRedirect(location);
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.ChangeBalanceSlotsRequest;
 import com.example.bankcards.dto.ChangeCardStatusRequest;
 import com.example.bankcards.enums.CardStatus;
 import com.example.bankcards.exception.WrongCardStatus;
 import com.example.bankcards.service.AdminCardsService;
+import com.example.bankcards.util.QueryBudget;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -66,6 +68,7 @@ public class AdminCardsController {
             )
     })
     @GetMapping("/{id}")
+    @QueryBudget(1)
     public ResponseEntity<CardResponse> get(
             @Parameter(description = "ID of the card to retrieve", required = true, example = "1")
             @PathVariable("id") Long id
@@ -168,6 +171,53 @@ public class AdminCardsController {
         return ResponseEntity.ok().build();
     }
 
+    @Operation(
+            summary = "Change number of balance slots",
+            description = "Splits the balance of a card across the given number of slot rows, " +
+                    "so concurrent transfers to the card update different rows. " +
+                    "0 moves the whole balance back to the card row."
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Number of balance slots updated successfully"
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Card not found",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            examples = @ExampleObject(
+                                    value = "{\"error\": \"Card not Found\", \"timestamp\": \"1757615790252\"}"
+                            )
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Access denied - admin privileges required"
+            )
+    })
+    @io.swagger.v3.oas.annotations.parameters.RequestBody(
+            description = "Balance slots change request",
+            required = true,
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                    schema = @Schema(implementation = ChangeBalanceSlotsRequest.class),
+                    examples = @ExampleObject(
+                            value = "{\"slots\": 8}"
+                    )
+            )
+    )
+    @PatchMapping("/{id}/balance-slots")
+    public ResponseEntity<HttpStatus> changeBalanceSlots(
+            @Parameter(description = "ID of the card to update", required = true, example = "1")
+            @PathVariable("id") Long id,
+            @RequestBody @Valid ChangeBalanceSlotsRequest request
+    ) {
+        adminCardsService.setBalanceSlots(id, request.getSlots());
+        return ResponseEntity.ok().build();
+    }
+
     @Operation(
             summary = "Delete card",
             description = "Permanently deletes a specific card from the system. This action cannot be undone."
@@ -8,6 +8,7 @@ import com.example.bankcards.enums.CardStatus;
 import com.example.bankcards.service.CardsService;
 import com.example.bankcards.service.AdminUsersService;
 import com.example.bankcards.util.BankModelMapper;
+import com.example.bankcards.util.QueryBudget;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -74,6 +75,7 @@ public class AdminUsersController {
             )
     })
     @GetMapping("/{id}")
+    @QueryBudget(1)
     public ResponseEntity<UserResponse> getUser(
             @Parameter(description = "ID of the user to retrieve", required = true, example = "1")
             @PathVariable Long id
@@ -189,12 +191,23 @@ public class AdminUsersController {
                             )
                     )
             ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Invalid cursor or sort for cursor pagination",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            examples = @ExampleObject(
+                                    value = "{\"error\": \"Cursor does not match the requested sort\", \"timestamp\": \"1757615790252\"}"
+                            )
+                    )
+            ),
             @ApiResponse(
                     responseCode = "403",
                     description = "Access denied - admin privileges required"
             )
     })
     @GetMapping("/{userId}/cards")
+    @QueryBudget(3)
     public ResponseEntity<PageResponse<CardResponse>> getUserCards(
             @Parameter(description = "ID of the user to retrieve cards for", required = true, example = "1")
             @PathVariable Long userId,
@@ -210,9 +223,16 @@ public class AdminUsersController {
             @Parameter(description = "Minimum balance filter", example = "100.00")
             @RequestParam(value = "minBalance", required = false) BigDecimal minBalance,
             @Parameter(description = "Maximum balance filter", example = "5000.00")
-            @RequestParam(value = "maxBalance", required = false) BigDecimal maxBalance
+            @RequestParam(value = "maxBalance", required = false) BigDecimal maxBalance,
+            @Parameter(description = "Switches to cursor pagination: empty for the first page, then nextCursor " +
+                    "of the previous page. Supports one sort property out of id, balance, expiryDate, status " +
+                    "and ignores page. Totals are not returned")
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @Parameter(description = "Whether to return totalElements and totalPages. Without totals " +
+                    "no count is run and hasNext tells whether there is a next page", example = "true")
+            @RequestParam(value = "withTotal", defaultValue = "true") boolean withTotal
     ) {
-        PageResponse<CardResponse> pageResponse = cardsService.getUserCards(userId, page, limit, sort, cardStatus, minBalance, maxBalance);
+        PageResponse<CardResponse> pageResponse = cardsService.getUserCards(userId, page, limit, sort, cardStatus, minBalance, maxBalance, cursor, withTotal);
         return new ResponseEntity<>(pageResponse, HttpStatus.OK);
     }
 
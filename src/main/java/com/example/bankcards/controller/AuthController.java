@@ -5,7 +5,6 @@ import com.auth0.jwt.interfaces.DecodedJWT;
 import com.example.bankcards.dto.AuthRequest;
 import com.example.bankcards.dto.JWTResponse;
 import com.example.bankcards.dto.RefreshTokenRequest;
-import com.example.bankcards.entity.RefreshToken;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.InvalidRefreshTokenException;
 import com.example.bankcards.exception.LoginException;
@@ -14,6 +13,7 @@ import com.example.bankcards.service.AuthService;
 import com.example.bankcards.service.TokenService;
 import com.example.bankcards.service.AdminUsersService;
 import com.example.bankcards.util.BankModelMapper;
+import com.example.bankcards.util.QueryBudget;
 import com.example.bankcards.util.RequestValidator;
 import com.example.bankcards.util.UserValidator;
 import io.swagger.v3.oas.annotations.Operation;
@@ -85,6 +85,16 @@ public class AuthController {
                                     value = "{\"error\": \"Such username already exists\", \"timestamp\": \"1757618375981\"}"
                             )
                     )
+            ),
+            @ApiResponse(
+                    responseCode = "429",
+                    description = "Too many concurrent password checks, retry after the Retry-After delay",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            examples = @ExampleObject(
+                                    value = "{\"error\": \"Too many authentication requests, try again later\", \"timestamp\": \"1757618375981\"}"
+                            )
+                    )
             )
     })
     @io.swagger.v3.oas.annotations.parameters.RequestBody(
@@ -99,6 +109,7 @@ public class AuthController {
             )
     )
     @PostMapping("/register")
+    @QueryBudget(3)
     public ResponseEntity<HttpStatus> register(
             @RequestBody @Valid AuthRequest authRequest,
             BindingResult bindingResult
@@ -162,6 +173,16 @@ public class AuthController {
                                     value = "{\"error\": \"Wrong credentials\", \"timestamp\": \"1757618375981\"}"
                             )
                     )
+            ),
+            @ApiResponse(
+                    responseCode = "429",
+                    description = "Too many concurrent password checks, retry after the Retry-After delay",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            examples = @ExampleObject(
+                                    value = "{\"error\": \"Too many authentication requests, try again later\", \"timestamp\": \"1757618375981\"}"
+                            )
+                    )
             )
     })
     @io.swagger.v3.oas.annotations.parameters.RequestBody(
@@ -176,6 +197,7 @@ public class AuthController {
             )
     )
     @PostMapping("/login")
+    @QueryBudget(4)
     public ResponseEntity<JWTResponse> login(
             @RequestBody @Valid AuthRequest authDTO,
             BindingResult bindingResult
@@ -258,9 +280,8 @@ public class AuthController {
             DecodedJWT jwt = tokenService.validateRefreshToken(refreshTokenRequest.getRefreshToken());
             userId = jwt.getClaim("id").asLong();
 
-            // Getting current user's refresh token in order to compare
-            RefreshToken refreshToken = authService.findRefreshToken(userId);
-            if (refreshToken == null || !refreshToken.getRefreshToken().equals(refreshTokenRequest.getRefreshToken())) {
+            // Comparing with the current user's refresh token
+            if (!authService.isCurrentRefreshToken(userId, refreshTokenRequest.getRefreshToken())) {
                 throw new InvalidRefreshTokenException("Invalid refresh token");
             }
         } catch (JWTVerificationException e) {
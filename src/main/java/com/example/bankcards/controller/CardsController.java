@@ -3,9 +3,12 @@ package com.example.bankcards.controller;
 import com.example.bankcards.dto.CardNumberResponse;
 import com.example.bankcards.dto.CardResponse;
 import com.example.bankcards.dto.PageResponse;
+import com.example.bankcards.dto.TransactionResponse;
 import com.example.bankcards.enums.CardStatus;
+import com.example.bankcards.enums.TransactionDirection;
 import com.example.bankcards.security.UserPrincipal;
 import com.example.bankcards.service.CardsService;
+import com.example.bankcards.util.QueryBudget;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -22,6 +25,7 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 
 @RestController
 @RequestMapping("/cards")
@@ -76,6 +80,7 @@ public class CardsController {
             )
     })
     @GetMapping("/{id}")
+    @QueryBudget(1)
     public ResponseEntity<CardResponse> getCard(
             @Parameter(description = "ID of the card to retrieve", required = true, example = "1")
             @PathVariable Long id,
@@ -116,6 +121,7 @@ public class CardsController {
             )
     })
     @PatchMapping("/block/{id}")
+    @QueryBudget(2)
     public ResponseEntity<HttpStatus> requestCardBlocking(
             @Parameter(description = "ID of the card to block", required = true, example = "1")
             @PathVariable Long id,
@@ -163,6 +169,7 @@ public class CardsController {
             )
     })
     @GetMapping("/{id}/balance")
+    @QueryBudget(2)
     public ResponseEntity<BigDecimal> getBalance(
             @Parameter(description = "ID of the card to get balance for", required = true, example = "1")
             @PathVariable Long id,
@@ -210,6 +217,7 @@ public class CardsController {
             )
     })
     @GetMapping("/{id}/card-number")
+    @QueryBudget(1)
     public ResponseEntity<CardNumberResponse> getCardNumber(
             @Parameter(description = "ID of the card to get number for", required = true, example = "1")
             @PathVariable("id") Long id,
@@ -237,9 +245,20 @@ public class CardsController {
                                             "\"balance\": 673.24}], \"page\": 0, \"limit\": 10, \"totalElements\": 3, \"totalPages\": 1}"
                             )
                     )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Invalid cursor or sort for cursor pagination",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            examples = @ExampleObject(
+                                    value = "{\"error\": \"Cursor does not match the requested sort\", \"timestamp\": \"1757615790252\"}"
+                            )
+                    )
             )
     })
     @GetMapping("/cards")
+    @QueryBudget(3)
     public ResponseEntity<PageResponse<CardResponse>> getCards(
             @Parameter(description = "Page number (zero-based)", example = "0")
             @RequestParam(value = "page", defaultValue = "0") Integer page,
@@ -253,11 +272,93 @@ public class CardsController {
             @RequestParam(value = "minBalance", required = false) BigDecimal minBalance,
             @Parameter(description = "Maximum balance filter", example = "5000.00")
             @RequestParam(value = "maxBalance", required = false) BigDecimal maxBalance,
+            @Parameter(description = "Switches to cursor pagination: empty for the first page, then nextCursor " +
+                    "of the previous page. Supports one sort property out of id, balance, expiryDate, status " +
+                    "and ignores page. Totals are not returned")
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @Parameter(description = "Whether to return totalElements and totalPages. Without totals " +
+                    "no count is run and hasNext tells whether there is a next page", example = "true")
+            @RequestParam(value = "withTotal", defaultValue = "true") boolean withTotal,
             @Parameter(hidden = true)
             @AuthenticationPrincipal UserPrincipal user
     ) {
-        PageResponse<CardResponse> pageResponse = cardsService.getUserCards(user.getUserId(), page, limit, sort, cardStatus, minBalance, maxBalance);
+        PageResponse<CardResponse> pageResponse = cardsService.getUserCards(user.getUserId(), page, limit, sort, cardStatus, minBalance, maxBalance, cursor, withTotal);
         return new ResponseEntity<>(pageResponse, HttpStatus.OK);
     }
 
+    @Operation(
+            summary = "Get card transactions",
+            description = "Retrieve the statement of a specific card owned by the authenticated user, newest first, " +
+                    "in cursor pagination"
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Transactions retrieved successfully",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = PageResponse.class),
+                            examples = @ExampleObject(
+                                    value = "{\"content\": [{\"id\": 42, \"direction\": \"OUTGOING\", " +
+                                            "\"counterpartCardNumber\": \"**** **** **** 5678\", \"amount\": 100.50, " +
+                                            "\"executedAt\": \"2025-09-11 17:11:37.923\"}], \"limit\": 20, " +
+                                            "\"nextCursor\": \"ZXhlY3V0ZWRBdDpERVNDOjQyOjIwMjUtMDktMTFUMTQ6MTE6MzcuOTIzWg\"}"
+                            )
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Invalid cursor",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            examples = @ExampleObject(
+                                    value = "{\"error\": \"Invalid cursor\", \"timestamp\": \"1757615790252\"}"
+                            )
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Card not found",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            examples = @ExampleObject(
+                                    value = "{\"error\": \"Card not found\", \"timestamp\": \"1757615223938\"}"
+                            )
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "403",
+                    description = "Access denied - card belongs to another user",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            examples = @ExampleObject(
+                                    value = "{\"error\": \"You do not have permission to access this card\", \"timestamp\": \"1757615223938\"}"
+                            )
+                    )
+            )
+    })
+    @GetMapping("/{id}/transactions")
+    @QueryBudget(2)
+    public ResponseEntity<PageResponse<TransactionResponse>> getTransactions(
+            @Parameter(description = "ID of the card to get transactions for", required = true, example = "1")
+            @PathVariable Long id,
+            @Parameter(description = "Number of items per page, at most 100", example = "20")
+            @RequestParam(value = "limit", defaultValue = "20") Integer limit,
+            @Parameter(description = "Only transfers received or only transfers sent by the card", example = "OUTGOING")
+            @RequestParam(value = "direction", required = false) TransactionDirection direction,
+            @Parameter(description = "Start of the time range, inclusive", example = "2025-09-01T00:00:00Z")
+            @RequestParam(value = "from", required = false) Instant from,
+            @Parameter(description = "End of the time range, exclusive", example = "2025-10-01T00:00:00Z")
+            @RequestParam(value = "to", required = false) Instant to,
+            @Parameter(description = "Empty or absent for the first page, then nextCursor of the previous page")
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @Parameter(hidden = true)
+            @AuthenticationPrincipal UserPrincipal user
+    ) {
+        return new ResponseEntity<>(
+                cardsService.getCardTransactions(id, user.getUserId(), limit, direction, from, to, cursor),
+                HttpStatus.OK
+        );
+    }
+
 }
@@ -1,8 +1,11 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.BatchTransactionRequest;
+import com.example.bankcards.dto.BatchTransactionResponse;
 import com.example.bankcards.dto.TransactionRequest;
 import com.example.bankcards.security.UserPrincipal;
 import com.example.bankcards.service.TransactionsService;
+import com.example.bankcards.util.QueryBudget;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -82,6 +85,16 @@ public class TransactionsController {
                             )
                     )
             ),
+            @ApiResponse(
+                    responseCode = "422",
+                    description = "Invalid idempotency key",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            examples = @ExampleObject(
+                                    value = "{\"error\": \"Idempotency key was already used for a different transfer\", \"timestamp\": \"1757615790252\"}"
+                            )
+                    )
+            ),
             @ApiResponse(
                     responseCode = "402",
                     description = "Insufficient funds",
@@ -106,13 +119,73 @@ public class TransactionsController {
             )
     )
     @PatchMapping("/transfers")
+    @QueryBudget(6)
     public ResponseEntity<HttpStatus> transfer(
             @RequestBody @Valid TransactionRequest transactionRequest,
+            @Parameter(description = "Unique key of the transfer. A retried request with the same key is not executed again",
+                    example = "5f1c3c9e-8a4b-4d8e-9a59-2f1f0c5b7d11")
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @Parameter(hidden = true)
             @AuthenticationPrincipal UserPrincipal user
     ) {
-        transactionsService.transfer(transactionRequest, user.getUserId());
+        boolean executed = transactionsService.transfer(transactionRequest, user.getUserId(), idempotencyKey);
+        if (!executed) {
+            // Replay of an already completed transfer
+            return ResponseEntity.ok().header("Idempotent-Replayed", "true").build();
+        }
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
+    @Operation(
+            summary = "Transfer funds in a batch",
+            description = "Execute several transfers between cards owned by the authenticated user in one database " +
+                    "transaction. Transfers are applied in order; a failed transfer does not affect the others."
+    )
+    @ApiResponses({
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Batch processed, see per-transfer results",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = BatchTransactionResponse.class),
+                            examples = @ExampleObject(
+                                    value = "{\"completed\": 1, \"failed\": 1, \"results\": [" +
+                                            "{\"index\": 0, \"status\": \"COMPLETED\", \"error\": null}, " +
+                                            "{\"index\": 1, \"status\": \"FAILED\", \"error\": \"Insufficient funds\"}]}"
+                            )
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Invalid request parameters",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            examples = @ExampleObject(
+                                    value = "{\"error\": \"transfers - At least one transfer must be specified\", \"timestamp\": \"1757615790252\"}"
+                            )
+                    )
+            )
+    })
+    @io.swagger.v3.oas.annotations.parameters.RequestBody(
+            description = "Batch of transaction requests",
+            required = true,
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                    schema = @Schema(implementation = BatchTransactionRequest.class),
+                    examples = @ExampleObject(
+                            value = "{\"transfers\": [{\"fromCard\": \"1234567812345678\", " +
+                                    "\"toCard\": \"8765432187654321\", \"amount\": 100.50}]}"
+                    )
+            )
+    )
+    @PatchMapping("/transfers/batch")
+    public ResponseEntity<BatchTransactionResponse> transferBatch(
+            @RequestBody @Valid BatchTransactionRequest batchRequest,
+            @Parameter(hidden = true)
+            @AuthenticationPrincipal UserPrincipal user
+    ) {
+        BatchTransactionResponse response = transactionsService.transferBatch(batchRequest.getTransfers(), user.getUserId());
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
 }
@@ -0,0 +1,25 @@
+package com.example.bankcards.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+@Schema(description = "Batch transaction request DTO containing several fund transfers between cards")
+public class BatchTransactionRequest {
+
+    @Schema(description = "Transfers to execute, in order", maxLength = 1000)
+    @NotEmpty(message = "At least one transfer must be specified")
+    @Size(max = 1000, message = "Batch must contain at most 1000 transfers")
+    private List<@Valid TransactionRequest> transfers;
+
+    public List<TransactionRequest> getTransfers() {
+        return transfers;
+    }
+
+    public void setTransfers(List<TransactionRequest> transfers) {
+        this.transfers = transfers;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.bankcards.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Batch transaction response DTO with per-transfer results")
+public class BatchTransactionResponse {
+
+    @Schema(description = "Number of completed transfers", example = "2")
+    private int completed;
+
+    @Schema(description = "Number of failed transfers", example = "1")
+    private int failed;
+
+    @Schema(description = "Results in the order of the requested transfers")
+    private List<BatchTransactionResult> results;
+
+    public BatchTransactionResponse(int completed, int failed, List<BatchTransactionResult> results) {
+        this.completed = completed;
+        this.failed = failed;
+        this.results = results;
+    }
+
+    public int getCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(int completed) {
+        this.completed = completed;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public List<BatchTransactionResult> getResults() {
+        return results;
+    }
+
+    public void setResults(List<BatchTransactionResult> results) {
+        this.results = results;
+    }
+}
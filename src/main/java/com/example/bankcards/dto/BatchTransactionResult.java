@@ -0,0 +1,47 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.enums.TransferStatus;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Result of a single transfer within a batch")
+public class BatchTransactionResult {
+
+    @Schema(description = "Position of the transfer in the request (zero-based)", example = "0")
+    private int index;
+
+    @Schema(description = "Outcome of the transfer", example = "COMPLETED")
+    private TransferStatus status;
+
+    @Schema(description = "Error message if the transfer failed", example = "Insufficient funds")
+    private String error;
+
+    public BatchTransactionResult(int index, TransferStatus status, String error) {
+        this.index = index;
+        this.status = status;
+        this.error = error;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public TransferStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(TransferStatus status) {
+        this.status = status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
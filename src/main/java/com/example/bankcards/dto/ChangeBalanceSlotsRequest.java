@@ -0,0 +1,29 @@
+package com.example.bankcards.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+@Schema(description = "Request DTO for changing the number of slots a card balance is split across")
+public class ChangeBalanceSlotsRequest {
+
+    @Schema(
+            description = "Number of balance slots, 0 stores the whole balance in the card row",
+            example = "8",
+            minimum = "0",
+            maximum = "64"
+    )
+    @NotNull(message = "Number of slots must not be empty")
+    @Min(value = 0, message = "Number of slots must be greater than or equal to 0")
+    @Max(value = 64, message = "Number of slots must be less than or equal to 64")
+    private Integer slots;
+
+    public Integer getSlots() {
+        return slots;
+    }
+
+    public void setSlots(Integer slots) {
+        this.slots = slots;
+    }
+}
@@ -1,26 +1,39 @@
 package com.example.bankcards.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 import java.util.List;
 
 @Schema(description = "Paginated response wrapper")
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class PageResponse<T> {
 
     @Schema(description = "List of items on the current page")
     private List<T> content;
 
-    @Schema(description = "Current page number (zero-based)", example = "0")
-    private int page;
+    @Schema(description = "Current page number (zero-based), absent in cursor pagination", example = "0")
+    private Integer page;
 
     @Schema(description = "Number of items per page", example = "10")
     private int limit;
 
-    @Schema(description = "Total number of elements across all pages", example = "100")
-    private long totalElements;
+    @Schema(description = "Total number of elements across all pages, absent in cursor pagination " +
+            "and when totals are not requested", example = "100")
+    private Long totalElements;
 
-    @Schema(description = "Total number of pages", example = "10")
-    private int totalPages;
+    @Schema(description = "Total number of pages, absent in cursor pagination and when totals are not requested",
+            example = "10")
+    private Integer totalPages;
+
+    @Schema(description = "Whether there is a next page, present only when totals are not requested", example = "true")
+    private Boolean hasNext;
+
+    @Schema(
+            description = "Cursor of the next page in cursor pagination, absent on the last page",
+            example = "YmFsYW5jZTpERVNDOjQyOjY3My4yNA"
+    )
+    private String nextCursor;
 
     public PageResponse(List<T> content, int page, int limit, long totalElements, int totalPages) {
         this.content = content;
@@ -30,6 +43,19 @@ public class PageResponse<T> {
         this.totalPages = totalPages;
     }
 
+    public PageResponse(List<T> content, int page, int limit, boolean hasNext) {
+        this.content = content;
+        this.page = page;
+        this.limit = limit;
+        this.hasNext = hasNext;
+    }
+
+    public PageResponse(List<T> content, int limit, String nextCursor) {
+        this.content = content;
+        this.limit = limit;
+        this.nextCursor = nextCursor;
+    }
+
     public List<T> getContent() {
         return content;
     }
@@ -38,11 +64,11 @@ public class PageResponse<T> {
         this.content = content;
     }
 
-    public int getPage() {
+    public Integer getPage() {
         return page;
     }
 
-    public void setPage(int page) {
+    public void setPage(Integer page) {
         this.page = page;
     }
 
@@ -54,19 +80,35 @@ public class PageResponse<T> {
         this.limit = limit;
     }
 
-    public long getTotalElements() {
+    public Long getTotalElements() {
         return totalElements;
     }
 
-    public void setTotalElements(long totalElements) {
+    public void setTotalElements(Long totalElements) {
         this.totalElements = totalElements;
     }
 
-    public int getTotalPages() {
+    public Integer getTotalPages() {
         return totalPages;
     }
 
-    public void setTotalPages(int totalPages) {
+    public void setTotalPages(Integer totalPages) {
         this.totalPages = totalPages;
     }
+
+    public Boolean getHasNext() {
+        return hasNext;
+    }
+
+    public void setHasNext(Boolean hasNext) {
+        this.hasNext = hasNext;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
 }
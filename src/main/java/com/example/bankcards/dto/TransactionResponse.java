@@ -0,0 +1,65 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.enums.TransactionDirection;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.math.BigDecimal;
+
+@Schema(description = "Transaction of a card statement")
+public class TransactionResponse {
+
+    @Schema(description = "Unique identifier of the transaction", example = "1")
+    private Long id;
+
+    @Schema(description = "Whether the card received or sent the amount", example = "OUTGOING")
+    private TransactionDirection direction;
+
+    @Schema(description = "Masked number of the other card", example = "**** **** **** 5678")
+    private String counterpartCardNumber;
+
+    @Schema(description = "Amount transferred", example = "100.50")
+    private BigDecimal amount;
+
+    @Schema(description = "Execution time in YYYY-MM-DD HH:MM:SS.SSS format", example = "2025-09-11 17:11:37.923")
+    private String executedAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public TransactionDirection getDirection() {
+        return direction;
+    }
+
+    public void setDirection(TransactionDirection direction) {
+        this.direction = direction;
+    }
+
+    public String getCounterpartCardNumber() {
+        return counterpartCardNumber;
+    }
+
+    public void setCounterpartCardNumber(String counterpartCardNumber) {
+        this.counterpartCardNumber = counterpartCardNumber;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    public String getExecutedAt() {
+        return executedAt;
+    }
+
+    public void setExecutedAt(String executedAt) {
+        this.executedAt = executedAt;
+    }
+}
@@ -26,6 +26,22 @@ public class Card {
     )
     private String cardNumber;
 
+    @Column(name = "card_number_hash")
+    @Schema(
+            description = "HMAC-SHA256 of the card number, used to look the card up without decrypting card numbers",
+            example = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08",
+            accessMode = Schema.AccessMode.READ_ONLY
+    )
+    private String cardNumberHash;
+
+    @Column(name = "card_last4")
+    @Schema(
+            description = "Last four digits of the card number, used to build the masked number",
+            example = "5678",
+            accessMode = Schema.AccessMode.READ_ONLY
+    )
+    private String cardLast4;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "owner_id")
     @Schema(description = "User who owns this card", implementation = User.class, accessMode = Schema.AccessMode.READ_ONLY)
@@ -58,11 +74,35 @@ public class Card {
     )
     private BigDecimal balance;
 
+    @Column(name = "balance_slots")
+    @Schema(
+            description = "Number of slot rows the balance is split across, 0 if the balance is stored in the card row",
+            example = "0",
+            minimum = "0",
+            accessMode = Schema.AccessMode.READ_ONLY
+    )
+    private int balanceSlots;
+
+    @Version
+    @Column(name = "version")
+    @Schema(description = "Optimistic locking version of the card row", example = "0", accessMode = Schema.AccessMode.READ_ONLY)
+    private Long version;
+
     public Card() {
     }
 
-    public Card(String cardNumber, User owner, Date expiryDate, CardStatus status, BigDecimal balance) {
+    public Card(
+            String cardNumber,
+            String cardNumberHash,
+            String cardLast4,
+            User owner,
+            Date expiryDate,
+            CardStatus status,
+            BigDecimal balance
+    ) {
         this.cardNumber = cardNumber;
+        this.cardNumberHash = cardNumberHash;
+        this.cardLast4 = cardLast4;
         this.owner = owner;
         this.expiryDate = expiryDate;
         this.status = status;
@@ -85,6 +125,22 @@ public class Card {
         this.cardNumber = cardNumber;
     }
 
+    public String getCardNumberHash() {
+        return cardNumberHash;
+    }
+
+    public void setCardNumberHash(String cardNumberHash) {
+        this.cardNumberHash = cardNumberHash;
+    }
+
+    public String getCardLast4() {
+        return cardLast4;
+    }
+
+    public void setCardLast4(String cardLast4) {
+        this.cardLast4 = cardLast4;
+    }
+
     public User getOwner() {
         return owner;
     }
@@ -116,4 +172,20 @@ public class Card {
     public void setBalance(BigDecimal balance) {
         this.balance = balance;
     }
+
+    public int getBalanceSlots() {
+        return balanceSlots;
+    }
+
+    public void setBalanceSlots(int balanceSlots) {
+        this.balanceSlots = balanceSlots;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,74 @@
+package com.example.bankcards.entity;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+
+@Entity
+@Table(
+        name = "card_balance_slot",
+        uniqueConstraints = @UniqueConstraint(name = "unique_card_balance_slot", columnNames = {"card_id", "slot"})
+)
+@Schema(name = "CardBalanceSlot", description = "Part of the balance of a card whose balance is split across several rows")
+public class CardBalanceSlot {
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Schema(description = "Unique identifier of the slot", example = "1", accessMode = Schema.AccessMode.READ_ONLY)
+    private Long id;
+
+    @Column(name = "card_id")
+    @Schema(description = "ID of the card the slot belongs to", example = "1")
+    private Long cardId;
+
+    @Column(name = "slot")
+    @Schema(description = "Number of the slot, from 0 to the number of slots of the card", example = "0")
+    private int slot;
+
+    @Column(name = "balance")
+    @Schema(description = "Part of the card balance stored in the slot", example = "250.00", minimum = "0.00")
+    private BigDecimal balance;
+
+    public CardBalanceSlot() {
+    }
+
+    public CardBalanceSlot(Long cardId, int slot, BigDecimal balance) {
+        this.cardId = cardId;
+        this.slot = slot;
+        this.balance = balance;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getCardId() {
+        return cardId;
+    }
+
+    public void setCardId(Long cardId) {
+        this.cardId = cardId;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    public void setSlot(int slot) {
+        this.slot = slot;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public void setBalance(BigDecimal balance) {
+        this.balance = balance;
+    }
+}
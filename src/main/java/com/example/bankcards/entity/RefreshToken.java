@@ -21,20 +21,20 @@ public class RefreshToken {
     )
     private Long userId;
 
-    @Column(name = "refresh_token")
+    // SHA-256 digest of the JWT, the token itself is not stored
+    @Column(name = "refresh_token_hash", nullable = false, unique = true, length = 32)
     @Schema(
-            description = "JWT refresh token value",
-            example = "eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9...",
+            description = "SHA-256 digest of the JWT refresh token",
             accessMode = Schema.AccessMode.READ_ONLY
     )
-    private String refreshToken;
+    private byte[] refreshTokenHash;
 
     public RefreshToken() {
     }
 
-    public RefreshToken(Long userId, String refreshToken) {
+    public RefreshToken(Long userId, byte[] refreshTokenHash) {
         this.userId = userId;
-        this.refreshToken = refreshToken;
+        this.refreshTokenHash = refreshTokenHash;
     }
 
     public Long getId() {
@@ -53,11 +53,11 @@ public class RefreshToken {
         return userId;
     }
 
-    public String getRefreshToken() {
-        return refreshToken;
+    public byte[] getRefreshTokenHash() {
+        return refreshTokenHash;
     }
 
-    public void setRefreshToken(String refreshToken) {
-        this.refreshToken = refreshToken;
+    public void setRefreshTokenHash(byte[] refreshTokenHash) {
+        this.refreshTokenHash = refreshTokenHash;
     }
 }
@@ -0,0 +1,84 @@
+package com.example.bankcards.entity;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.*;
+
+import java.util.Date;
+
+@Entity
+@Table(name = "transfer_idempotency_key")
+@Schema(name = "TransferIdempotencyKey", description = "Idempotency key of an already executed transfer")
+public class TransferIdempotencyKey {
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Schema(description = "Unique identifier of the record", example = "1", accessMode = Schema.AccessMode.READ_ONLY)
+    private Long id;
+
+    @Column(name = "user_id")
+    @Schema(description = "ID of the user who sent the transfer", example = "1")
+    private Long userId;
+
+    @Column(name = "idempotency_key")
+    @Schema(description = "Value of the Idempotency-Key header", example = "5f1c3c9e-8a4b-4d8e-9a59-2f1f0c5b7d11")
+    private String idempotencyKey;
+
+    @Column(name = "request_hash")
+    @Schema(description = "SHA-256 of the transfer request, used to detect key reuse", example = "9f86d081884c7d65...")
+    private String requestHash;
+
+    @Column(name = "created_at")
+    @Schema(description = "Date and time when the transfer was executed", example = "2025-09-11 17:11:37.923000")
+    private Date createdAt;
+
+    public TransferIdempotencyKey() {
+    }
+
+    public TransferIdempotencyKey(Long userId, String idempotencyKey, String requestHash, Date createdAt) {
+        this.userId = userId;
+        this.idempotencyKey = idempotencyKey;
+        this.requestHash = requestHash;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public String getRequestHash() {
+        return requestHash;
+    }
+
+    public void setRequestHash(String requestHash) {
+        this.requestHash = requestHash;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,5 @@
+package com.example.bankcards.enums;
+
+public enum TransferStatus {
+    COMPLETED, FAILED
+}
@@ -0,0 +1,15 @@
+package com.example.bankcards.exception;
+
+/**
+ * Base class of the exceptions thrown on expected business outcomes, such as a missing card, a foreign
+ * card or insufficient funds. {@link GlobalExceptionHandler} turns them into 4xx responses from the type
+ * and the message alone, so they are created without a stack trace and without suppressed exceptions:
+ * throwing one costs an allocation, not a walk of the whole filter and proxy stack.
+ * <p>
+ * Failures that need a stack trace to be diagnosed must not extend this class.
+ */
+public abstract class BusinessException extends RuntimeException {
+    protected BusinessException(String message) {
+        super(message, null, false, false);
+    }
+}
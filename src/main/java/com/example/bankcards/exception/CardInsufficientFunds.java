@@ -1,6 +1,6 @@
 package com.example.bankcards.exception;
 
-public class CardInsufficientFunds extends RuntimeException {
+public class CardInsufficientFunds extends BusinessException {
     public CardInsufficientFunds(String message) {
         super(message);
     }
@@ -1,6 +1,6 @@
 package com.example.bankcards.exception;
 
-public class CardNotFoundException extends RuntimeException {
+public class CardNotFoundException extends BusinessException {
     public CardNotFoundException(String message) {
         super(message);
     }
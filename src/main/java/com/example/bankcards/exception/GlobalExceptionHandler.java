@@ -1,6 +1,9 @@
 package com.example.bankcards.exception;
 
 import com.example.bankcards.dto.ExceptionResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -10,8 +13,16 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 @RestControllerAdvice
 public class GlobalExceptionHandler {
 
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public GlobalExceptionHandler(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     @ExceptionHandler
     public ResponseEntity<ExceptionResponse> handleException(MethodArgumentNotValidException ex) {
+        countException(ex);
         String errorMessage = ex.getBindingResult().getFieldErrors().stream()
                 .map(error -> error.getField() + " - " + error.getDefaultMessage())
                 .reduce((msg1, msg2) -> msg1 + "; " + msg2)
@@ -25,6 +36,7 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler
     private ResponseEntity<ExceptionResponse> handleException(RegistrationException ex) {
+        countException(ex);
         ExceptionResponse response = new ExceptionResponse(
                 ex.getMessage(),
                 System.currentTimeMillis()
@@ -34,6 +46,7 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler
     private ResponseEntity<ExceptionResponse> handleException(LoginException ex) {
+        countException(ex);
         ExceptionResponse response = new ExceptionResponse(
                 ex.getMessage(),
                 System.currentTimeMillis()
@@ -43,6 +56,7 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler
     private ResponseEntity<ExceptionResponse> handleException(InvalidRefreshTokenException ex) {
+        countException(ex);
         ExceptionResponse response = new ExceptionResponse(
                 ex.getMessage(),
                 System.currentTimeMillis()
@@ -52,6 +66,7 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler
     public ResponseEntity<ExceptionResponse> handleException(UserNotFoundException ex) {
+        countException(ex);
         ExceptionResponse response = new ExceptionResponse(
                 ex.getMessage(),
                 System.currentTimeMillis()
@@ -61,6 +76,7 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler
     public ResponseEntity<ExceptionResponse> handleException(UserExistsException ex) {
+        countException(ex);
         ExceptionResponse response = new ExceptionResponse(
                 ex.getMessage(),
                 System.currentTimeMillis()
@@ -70,6 +86,7 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler
     public ResponseEntity<ExceptionResponse> handleException(InvalidCredentialsException ex) {
+        countException(ex);
         ExceptionResponse response = new ExceptionResponse(
                 ex.getMessage(),
                 System.currentTimeMillis()
@@ -79,6 +96,7 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler
     public ResponseEntity<ExceptionResponse> handleException(NoAuthorityException ex) {
+        countException(ex);
         ExceptionResponse response = new ExceptionResponse(
                 ex.getMessage(),
                 System.currentTimeMillis()
@@ -88,6 +106,7 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler
     public ResponseEntity<ExceptionResponse> handleException(CardNotFoundException ex) {
+        countException(ex);
         ExceptionResponse response = new ExceptionResponse(
                 ex.getMessage(),
                 System.currentTimeMillis()
@@ -97,6 +116,7 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler
     public ResponseEntity<ExceptionResponse> handleException(WrongCardStatus ex) {
+        countException(ex);
         ExceptionResponse response = new ExceptionResponse(
                 ex.getMessage(),
                 System.currentTimeMillis()
@@ -106,6 +126,7 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler
     public ResponseEntity<ExceptionResponse> handleException(SameCardTransactionException ex) {
+        countException(ex);
         ExceptionResponse response = new ExceptionResponse(
                 ex.getMessage(),
                 System.currentTimeMillis()
@@ -115,6 +136,7 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler
     public ResponseEntity<ExceptionResponse> handleException(CardInsufficientFunds ex) {
+        countException(ex);
         ExceptionResponse response = new ExceptionResponse(
                 ex.getMessage(),
                 System.currentTimeMillis()
@@ -124,6 +146,7 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler
     public ResponseEntity<ExceptionResponse> handleException(InvalidCurrencyAmount ex) {
+        countException(ex);
         ExceptionResponse response = new ExceptionResponse(
                 ex.getMessage(),
                 System.currentTimeMillis()
@@ -131,4 +154,51 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler
+    public ResponseEntity<ExceptionResponse> handleException(TransferConflictException ex) {
+        countException(ex);
+        ExceptionResponse response = new ExceptionResponse(
+                ex.getMessage(),
+                System.currentTimeMillis()
+        );
+        return new ResponseEntity<>(response, HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<ExceptionResponse> handleException(IdempotencyKeyException ex) {
+        countException(ex);
+        ExceptionResponse response = new ExceptionResponse(
+                ex.getMessage(),
+                System.currentTimeMillis()
+        );
+        return new ResponseEntity<>(response, HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<ExceptionResponse> handleException(InvalidCursorException ex) {
+        countException(ex);
+        ExceptionResponse response = new ExceptionResponse(
+                ex.getMessage(),
+                System.currentTimeMillis()
+        );
+        return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<ExceptionResponse> handleException(PasswordHashingBusyException ex) {
+        countException(ex);
+        ExceptionResponse response = new ExceptionResponse(
+                ex.getMessage(),
+                System.currentTimeMillis()
+        );
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(response);
+    }
+
+    // Every exception turned into a response is counted by its type, so the rate of each failure can be graphed
+    private void countException(Exception ex) {
+        meterRegistry.counter("bank.exceptions", "exception", ex.getClass().getSimpleName()).increment();
+    }
+
 }
@@ -0,0 +1,7 @@
+package com.example.bankcards.exception;
+
+public class IdempotencyKeyException extends BusinessException {
+    public IdempotencyKeyException(String message) {
+        super(message);
+    }
+}
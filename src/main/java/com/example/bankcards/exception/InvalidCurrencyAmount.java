@@ -1,6 +1,6 @@
 package com.example.bankcards.exception;
 
-public class InvalidCurrencyAmount extends RuntimeException {
+public class InvalidCurrencyAmount extends BusinessException {
   public InvalidCurrencyAmount(String message) {
     super(message);
   }
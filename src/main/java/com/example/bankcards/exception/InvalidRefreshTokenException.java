@@ -1,6 +1,6 @@
 package com.example.bankcards.exception;
 
-public class InvalidRefreshTokenException extends RuntimeException {
+public class InvalidRefreshTokenException extends BusinessException {
     public InvalidRefreshTokenException(String message) {
         super(message);
     }
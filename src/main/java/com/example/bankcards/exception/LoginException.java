@@ -1,6 +1,6 @@
 package com.example.bankcards.exception;
 
-public class LoginException extends RuntimeException {
+public class LoginException extends BusinessException {
     public LoginException(String message) {
         super(message);
     }
@@ -1,6 +1,6 @@
 package com.example.bankcards.exception;
 
-public class NoAuthorityException extends RuntimeException {
+public class NoAuthorityException extends BusinessException {
     public NoAuthorityException(String message) {
         super(message);
     }
@@ -0,0 +1,7 @@
+package com.example.bankcards.exception;
+
+public class PasswordHashingBusyException extends BusinessException {
+    public PasswordHashingBusyException(String message) {
+        super(message);
+    }
+}
@@ -1,6 +1,6 @@
 package com.example.bankcards.exception;
 
-public class RegistrationException extends RuntimeException {
+public class RegistrationException extends BusinessException {
     public RegistrationException(String message) {
         super(message);
     }
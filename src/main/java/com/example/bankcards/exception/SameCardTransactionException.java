@@ -1,6 +1,6 @@
 package com.example.bankcards.exception;
 
-public class SameCardTransactionException extends RuntimeException {
+public class SameCardTransactionException extends BusinessException {
     public SameCardTransactionException(String message) {
         super(message);
     }
@@ -0,0 +1,7 @@
+package com.example.bankcards.exception;
+
+public class TransferConflictException extends BusinessException {
+    public TransferConflictException(String message) {
+        super(message);
+    }
+}
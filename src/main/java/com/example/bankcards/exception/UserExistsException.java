@@ -1,6 +1,6 @@
 package com.example.bankcards.exception;
 
-public class UserExistsException extends RuntimeException {
+public class UserExistsException extends BusinessException {
     public UserExistsException(String message) {
         super(message);
     }
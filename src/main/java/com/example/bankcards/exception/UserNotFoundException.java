@@ -1,6 +1,6 @@
 package com.example.bankcards.exception;
 
-public class UserNotFoundException extends RuntimeException {
+public class UserNotFoundException extends BusinessException {
   public UserNotFoundException(String message) {
     super(message);
   }
@@ -1,6 +1,6 @@
 package com.example.bankcards.exception;
 
-public class WrongCardStatus extends RuntimeException {
+public class WrongCardStatus extends BusinessException {
     public WrongCardStatus(String message) {
         super(message);
     }
@@ -0,0 +1,36 @@
+package com.example.bankcards.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * One encryption, decryption or blind-index hash of a card number. The card number itself is never recorded.
+ */
+@Name(CardNumberCryptoEvent.NAME)
+@Label("Card Number Crypto")
+@Category({"Bank", "Crypto"})
+@Description("Encryption, decryption or hashing of a card number")
+@StackTrace(false)
+public class CardNumberCryptoEvent extends Event {
+
+    public static final String NAME = "com.example.bankcards.CardNumberCrypto";
+
+    @Label("Operation")
+    private String operation;
+
+    @Label("Legacy Format")
+    @Description("Whether the value was decrypted with the former AES/ECB format")
+    private boolean legacy;
+
+    @Label("Outcome")
+    private String outcome;
+
+    public void commit(String operation, boolean legacy, String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.operation = operation;
+            this.legacy = legacy;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.bankcards.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Authentication of one request by its access token in JWTFilter, served either from the verified token
+ * cache or by verifying the token.
+ */
+@Name(TokenValidationEvent.NAME)
+@Label("Token Validation")
+@Category({"Bank", "Security"})
+@Description("Access token authentication of a request")
+@StackTrace(false)
+public class TokenValidationEvent extends Event {
+
+    public static final String NAME = "com.example.bankcards.TokenValidation";
+
+    @Label("User Id")
+    private long userId;
+
+    @Label("Outcome")
+    private String outcome;
+
+    public void commit(long userId, String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.userId = userId;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.bankcards.jfr;
+
+import jdk.jfr.*;
+
+import java.math.BigDecimal;
+
+/**
+ * One card-to-card transfer, from the card lookup to the commit, so a recording shows which
+ * transfer was slow and whether it waited for row locks or for retries. When the event is not
+ * enabled in a recording, begin, end and the setters cost nothing and nothing is committed.
+ */
+@Name(TransferEvent.NAME)
+@Label("Transfer")
+@Category({"Bank", "Transactions"})
+@Description("Card-to-card transfer")
+@StackTrace(false)
+public class TransferEvent extends Event {
+
+    public static final String NAME = "com.example.bankcards.Transfer";
+
+    @Label("From Card Id")
+    private long fromCardId;
+
+    @Label("To Card Id")
+    private long toCardId;
+
+    @Label("Amount")
+    @Description("Order of magnitude of the amount, for example 100-1000")
+    private String amountBucket;
+
+    @Label("Mode")
+    private String mode;
+
+    @Label("Attempts")
+    @Description("Transactions run, more than one when optimistic transfers were retried")
+    private int attempts;
+
+    @Label("Lock Wait")
+    @Description("Time spent loading the cards with their row locks, mostly waiting for concurrent transfers")
+    @Timespan(Timespan.NANOSECONDS)
+    private long lockWait;
+
+    @Label("Idempotent")
+    @Description("Whether the transfer was sent with an Idempotency-Key")
+    private boolean idempotent;
+
+    @Label("Outcome")
+    private String outcome;
+
+    public void setCards(long fromCardId, long toCardId) {
+        this.fromCardId = fromCardId;
+        this.toCardId = toCardId;
+    }
+
+    public void setRequest(BigDecimal amount, String mode, boolean idempotent) {
+        if (isEnabled()) {
+            this.amountBucket = amountBucket(amount);
+            this.mode = mode;
+            this.idempotent = idempotent;
+        }
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public void addLockWait(long nanos) {
+        this.lockWait += nanos;
+    }
+
+    public void commit(String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.outcome = outcome;
+            commit();
+        }
+    }
+
+    // Amounts are recorded only as a power-of-ten range, e.g. 250.00 as 100-1000
+    static String amountBucket(BigDecimal amount) {
+        int integerDigits = amount.precision() - amount.scale();
+        if (amount.signum() <= 0 || integerDigits <= 0) {
+            return "0-1";
+        }
+        return BigDecimal.ONE.movePointRight(integerDigits - 1).toPlainString()
+                + "-" + BigDecimal.ONE.movePointRight(integerDigits).toPlainString();
+    }
+}
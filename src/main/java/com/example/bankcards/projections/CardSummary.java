@@ -0,0 +1,20 @@
+package com.example.bankcards.projections;
+
+import com.example.bankcards.enums.CardStatus;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+// Read-only view of a card with the columns a card listing needs. The owner is
+// represented by the owner_id foreign key, so the owner row is never loaded
+public record CardSummary(
+        Long id,
+        Long ownerId,
+        String cardNumber,
+        String cardLast4,
+        Date expiryDate,
+        CardStatus status,
+        BigDecimal balance,
+        int balanceSlots
+) {
+}
@@ -0,0 +1,18 @@
+package com.example.bankcards.projections;
+
+import com.example.bankcards.enums.TransactionDirection;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+// Row of a card statement seen from that card: the direction of the transfer and the encrypted
+// number of the other card, with its last four digits when that card still exists and is backfilled
+public record TransactionSummary(
+        Long id,
+        TransactionDirection direction,
+        String counterpartCardNumber,
+        String counterpartLast4,
+        BigDecimal amount,
+        Date executedAt
+) {
+}
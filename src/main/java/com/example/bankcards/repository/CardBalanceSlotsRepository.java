@@ -0,0 +1,22 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.CardBalanceSlot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+
+@Repository
+public interface CardBalanceSlotsRepository extends JpaRepository<CardBalanceSlot, Long>, CardBalanceSlotsRepositoryCustom {
+
+    @Query("select coalesce(sum(s.balance), 0) from CardBalanceSlot s where s.cardId = :cardId")
+    BigDecimal sumBalanceByCardId(@Param("cardId") Long cardId);
+
+    @Modifying
+    @Query("delete from CardBalanceSlot s where s.cardId = :cardId")
+    int deleteAllByCardId(@Param("cardId") Long cardId);
+
+}
@@ -0,0 +1,16 @@
+package com.example.bankcards.repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public interface CardBalanceSlotsRepositoryCustom {
+
+    boolean credit(Long cardId, int slot, BigDecimal amount);
+
+    boolean debit(Long cardId, int slot, BigDecimal amount);
+
+    List<BigDecimal> findBalances(Long cardId);
+
+    List<BigDecimal> lockBalances(Long cardId);
+
+}
@@ -0,0 +1,48 @@
+package com.example.bankcards.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+// Slot balances are changed with plain conditional UPDATE statements instead of managed
+// entities: the database applies them to the latest committed row, so concurrent credits
+// to the same card only wait for each other when they pick the same slot
+public class CardBalanceSlotsRepositoryCustomImpl implements CardBalanceSlotsRepositoryCustom {
+
+    private static final String CREDIT_SQL =
+            "update card_balance_slot set balance = balance + ? where card_id = ? and slot = ?";
+    private static final String DEBIT_SQL =
+            "update card_balance_slot set balance = balance - ? where card_id = ? and slot = ? and balance >= ?";
+    private static final String FIND_SQL =
+            "select balance from card_balance_slot where card_id = ? order by slot";
+    private static final String LOCK_SQL =
+            "select balance from card_balance_slot where card_id = ? order by slot for update";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CardBalanceSlotsRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public boolean credit(Long cardId, int slot, BigDecimal amount) {
+        return jdbcTemplate.update(CREDIT_SQL, amount, cardId, slot) == 1;
+    }
+
+    @Override
+    public boolean debit(Long cardId, int slot, BigDecimal amount) {
+        return jdbcTemplate.update(DEBIT_SQL, amount, cardId, slot, amount) == 1;
+    }
+
+    @Override
+    public List<BigDecimal> findBalances(Long cardId) {
+        return jdbcTemplate.queryForList(FIND_SQL, BigDecimal.class, cardId);
+    }
+
+    @Override
+    public List<BigDecimal> lockBalances(Long cardId) {
+        return jdbcTemplate.queryForList(LOCK_SQL, BigDecimal.class, cardId);
+    }
+
+}
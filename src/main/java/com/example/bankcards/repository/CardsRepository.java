@@ -1,15 +1,49 @@
 package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.Card;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface CardsRepository extends JpaRepository<Card, Long>, JpaSpecificationExecutor<Card> {
+public interface CardsRepository extends JpaRepository<Card, Long>, JpaSpecificationExecutor<Card>, CardsRepositoryCustom {
 
-    Optional<Card> findByCardNumber(String cardNumber);
+    Optional<Card> findByCardNumberHash(String cardNumberHash);
+
+    List<Card> findAllByCardNumberHashIn(Collection<String> cardNumberHashes);
+
+    Slice<Card> findAllByCardNumberHashIsNullOrCardLast4IsNull(Pageable pageable);
+
+    // Rows are locked with SELECT ... FOR UPDATE in ascending id order,
+    // so two transfers over the same pair of cards always lock them in the same order.
+    // Cards with a sharded balance are skipped, their balance is not stored in the card row
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.cardNumberHash in :cardNumberHashes and c.balanceSlots = 0 order by c.id")
+    List<Card> findAllForUpdateByCardNumberHashIn(@Param("cardNumberHashes") Collection<String> cardNumberHashes);
+
+    // Shared locks do not block each other, they only keep the slot count of the cards
+    // from being changed until the transfer commits
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("select c from Card c where c.cardNumberHash in :cardNumberHashes order by c.id")
+    List<Card> findAllForShareByCardNumberHashIn(@Param("cardNumberHashes") Collection<String> cardNumberHashes);
+
+    // Served by the partial index idx_card_owner_sharded, which holds only the few sharded cards
+    @Query("select case when count(c) > 0 then true else false end from Card c " +
+            "where c.owner.id = :ownerId and c.balanceSlots > 0")
+    boolean hasShardedCards(@Param("ownerId") Long ownerId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id = :id")
+    Optional<Card> findForUpdateById(@Param("id") Long id);
 
 }
@@ -0,0 +1,16 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.projections.CardSummary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+
+public interface CardsRepositoryCustom {
+
+    // Selects only the listing columns into CardSummary records instead of managed Card entities.
+    // The balance of a sharded card is summed from its slots. Sorting by balance uses that sum
+    // only with slotBalances, otherwise it follows the card.balance column
+    Slice<CardSummary> findSummaries(Specification<Card> specification, Pageable pageable, boolean slotBalances);
+
+}
@@ -0,0 +1,77 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.projections.CardSummary;
+import com.example.bankcards.specifications.CardSpecifications;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CardsRepositoryCustomImpl implements CardsRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Slice<CardSummary> findSummaries(Specification<Card> specification, Pageable pageable, boolean slotBalances) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<CardSummary> query = criteriaBuilder.createQuery(CardSummary.class);
+        Root<Card> root = query.from(Card.class);
+
+        // owner.id is read from the owner_id column of the card, no join with the user table
+        query.select(criteriaBuilder.construct(
+                CardSummary.class,
+                root.get("id"),
+                root.get("owner").get("id"),
+                root.get("cardNumber"),
+                root.get("cardLast4"),
+                root.get("expiryDate"),
+                root.get("status"),
+                CardSpecifications.balance(root, query, criteriaBuilder, true),
+                root.get("balanceSlots")
+        ));
+        Predicate predicate = specification.toPredicate(root, query, criteriaBuilder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        if (slotBalances) {
+            Expression<BigDecimal> balance = CardSpecifications.balance(root, query, criteriaBuilder, true);
+            List<Order> orders = new ArrayList<>();
+            for (Sort.Order order : pageable.getSort()) {
+                if (order.getProperty().equals("balance")) {
+                    orders.add(order.isAscending() ? criteriaBuilder.asc(balance) : criteriaBuilder.desc(balance));
+                } else {
+                    orders.addAll(QueryUtils.toOrders(Sort.by(order), root, criteriaBuilder));
+                }
+            }
+            query.orderBy(orders);
+        } else {
+            query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, criteriaBuilder));
+        }
+
+        // One extra row tells whether there is a next page without a count query
+        List<CardSummary> summaries = entityManager.createQuery(query)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+
+        boolean hasNext = summaries.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? summaries.subList(0, pageable.getPageSize()) : summaries, pageable, hasNext);
+    }
+
+}
@@ -1,12 +1,20 @@
 package com.example.bankcards.repository;
 
 import com.example.bankcards.entity.RefreshToken;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface RefreshTokensRepository extends JpaRepository<RefreshToken, Long> {
     Optional<RefreshToken> findByUserId(Long userId);
+
+    List<RefreshToken> findAllByUserIdIn(Collection<Long> userIds);
+
+    Slice<RefreshToken> findAllBy(Pageable pageable);
 }
@@ -0,0 +1,27 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.enums.TransactionDirection;
+import com.example.bankcards.projections.TransactionSummary;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface TransactionsRepositoryCustom {
+
+    // Inserts all rows with a single JDBC batch instead of one round-trip per row
+    void insertAll(List<Transaction> transactions);
+
+    // Transactions of the card with the given encrypted number, newest first. A null direction returns both,
+    // from is inclusive and to exclusive, and a non-null afterId starts right after the (afterExecutedAt, afterId) row
+    List<TransactionSummary> findStatement(
+            String cardNumber,
+            TransactionDirection direction,
+            Instant from,
+            Instant to,
+            Instant afterExecutedAt,
+            Long afterId,
+            int limit
+    );
+
+}
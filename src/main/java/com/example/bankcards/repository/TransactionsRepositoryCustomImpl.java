@@ -0,0 +1,131 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.enums.TransactionDirection;
+import com.example.bankcards.projections.TransactionSummary;
+import com.example.bankcards.util.QueryCounter;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import jakarta.persistence.Tuple;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TransactionsRepositoryCustomImpl implements TransactionsRepositoryCustom {
+
+    private static final String INSERT_SQL =
+            "insert into transaction (from_card_number, to_card_number, amount, executed_at) values (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public TransactionsRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void insertAll(List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, transactions, transactions.size(), (statement, transaction) -> {
+            statement.setString(1, transaction.getFromCardNumber());
+            statement.setString(2, transaction.getToCardNumber());
+            statement.setBigDecimal(3, transaction.getAmount());
+            statement.setTimestamp(4, new Timestamp(transaction.getExecutedAt().getTime()));
+        });
+        // JdbcTemplate bypasses the Hibernate statement inspector, the batch is counted like a Hibernate one
+        QueryCounter.count();
+    }
+
+    // A card is on either side of a transfer, and an OR of both columns can use neither index for the order.
+    // Each direction is read as its own limited range of the (card, executed_at, id) index instead, and
+    // the two ranges are merged, so a page costs at most 2 * limit index entries however long the history is.
+    // The query runs through Hibernate, not JdbcTemplate, so it is counted against the query budget
+    @Override
+    public List<TransactionSummary> findStatement(
+            String cardNumber,
+            TransactionDirection direction,
+            Instant from,
+            Instant to,
+            Instant afterExecutedAt,
+            Long afterId,
+            int limit
+    ) {
+        boolean seek = afterId != null;
+        String sql;
+        if (direction != null) {
+            sql = directionQuery(direction, from != null, to != null, seek);
+        } else {
+            sql = "select * from (" + directionQuery(TransactionDirection.OUTGOING, from != null, to != null, seek)
+                    + ") outgoing union all select * from (" + directionQuery(TransactionDirection.INCOMING, from != null, to != null, seek)
+                    + ") incoming order by executed_at desc, id desc limit :limit";
+        }
+
+        Query query = entityManager.createNativeQuery(sql, Tuple.class)
+                .setParameter("cardNumber", cardNumber)
+                .setParameter("limit", limit);
+        if (from != null) {
+            query.setParameter("from", Timestamp.from(from));
+        }
+        if (to != null) {
+            query.setParameter("to", Timestamp.from(to));
+        }
+        if (seek) {
+            query.setParameter("afterExecutedAt", Timestamp.from(afterExecutedAt));
+            query.setParameter("afterId", afterId);
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Tuple> rows = query.getResultList();
+        List<TransactionSummary> summaries = new ArrayList<>(rows.size());
+        for (Tuple row : rows) {
+            summaries.add(new TransactionSummary(
+                    ((Number) row.get("id")).longValue(),
+                    TransactionDirection.valueOf((String) row.get("direction")),
+                    (String) row.get("counterpart_card_number"),
+                    (String) row.get("counterpart_last4"),
+                    (BigDecimal) row.get("amount"),
+                    toTimestamp(row.get("executed_at"))
+            ));
+        }
+        return summaries;
+    }
+
+    private static String directionQuery(TransactionDirection direction, boolean from, boolean to, boolean seek) {
+        boolean outgoing = direction == TransactionDirection.OUTGOING;
+        String cardColumn = outgoing ? "t.from_card_number" : "t.to_card_number";
+        String counterpartColumn = outgoing ? "t.to_card_number" : "t.from_card_number";
+
+        // The counterpart card is joined through idx_card_card_number by its encrypted number to mask it without
+        // decrypting. A ciphertext belongs to one card, so the join returns at most one row per transaction
+        StringBuilder sql = new StringBuilder("select t.id, '").append(direction.name()).append("' as direction, ")
+                .append(counterpartColumn).append(" as counterpart_card_number, c.card_last4 as counterpart_last4, ")
+                .append("t.amount, t.executed_at from transaction t left join card c on c.card_number = ")
+                .append(counterpartColumn)
+                .append(" where ").append(cardColumn).append(" = :cardNumber");
+        if (from) {
+            sql.append(" and t.executed_at >= :from");
+        }
+        if (to) {
+            sql.append(" and t.executed_at < :to");
+        }
+        if (seek) {
+            sql.append(" and (t.executed_at, t.id) < (:afterExecutedAt, :afterId)");
+        }
+        return sql.append(" order by t.executed_at desc, t.id desc limit :limit").toString();
+    }
+
+    private static Timestamp toTimestamp(Object value) {
+        return value instanceof LocalDateTime dateTime ? Timestamp.valueOf(dateTime) : (Timestamp) value;
+    }
+
+}
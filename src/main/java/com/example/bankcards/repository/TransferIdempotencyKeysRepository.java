@@ -0,0 +1,22 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.TransferIdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+import java.util.Optional;
+
+@Repository
+public interface TransferIdempotencyKeysRepository extends JpaRepository<TransferIdempotencyKey, Long> {
+
+    Optional<TransferIdempotencyKey> findByUserIdAndIdempotencyKey(Long userId, String idempotencyKey);
+
+    @Modifying
+    @Query("delete from TransferIdempotencyKey k where k.createdAt < :createdAt")
+    int deleteAllCreatedBefore(@Param("createdAt") Date createdAt);
+
+}
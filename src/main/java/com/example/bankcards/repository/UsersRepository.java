@@ -3,7 +3,11 @@ package com.example.bankcards.repository;
 import com.example.bankcards.entity.User;
 import jakarta.validation.constraints.NotBlank;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
@@ -12,4 +16,9 @@ public interface UsersRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(@NotBlank(message = "Username should not be blank") String username);
 
     boolean existsByUsername(@NotBlank(message = "Username should not be blank") String username);
+
+    @Transactional
+    @Modifying
+    @Query("update User u set u.password = :password where u.id = :id")
+    int updatePassword(@Param("id") Long id, @Param("password") String password);
 }
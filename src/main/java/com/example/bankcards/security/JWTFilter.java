@@ -1,8 +1,7 @@
 package com.example.bankcards.security;
 
 import com.auth0.jwt.exceptions.JWTVerificationException;
-import com.auth0.jwt.interfaces.DecodedJWT;
-import com.example.bankcards.service.TokenService;
+import com.example.bankcards.jfr.TokenValidationEvent;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -24,11 +23,11 @@ import java.util.LinkedHashMap;
 @Component
 public class JWTFilter extends OncePerRequestFilter {
 
-    private final TokenService tokenService;
+    private final VerifiedTokenCache verifiedTokenCache;
 
     @Autowired
-    public JWTFilter(TokenService tokenService) {
-        this.tokenService = tokenService;
+    public JWTFilter(VerifiedTokenCache verifiedTokenCache) {
+        this.verifiedTokenCache = verifiedTokenCache;
     }
 
     @Override
@@ -46,13 +45,12 @@ public class JWTFilter extends OncePerRequestFilter {
                 setResponse(response, request, "JWT token was not found");
                 return;
             } else {
+                TokenValidationEvent event = new TokenValidationEvent();
+                event.begin();
                 try {
-                    DecodedJWT jwt = tokenService.validateAccessToken(token);
-                    String role = jwt.getClaim("role").asString();
-                    String username = jwt.getClaim("username").asString();
-                    Long userId = jwt.getClaim("id").asLong();
-
-                    UserPrincipal userPrincipal = new UserPrincipal(userId, username, role);
+                    UserPrincipal userPrincipal = verifiedTokenCache.authenticate(token);
+                    event.commit(userPrincipal.getUserId(), "valid");
+                    String role = userPrincipal.getRole();
 
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                             userPrincipal,
@@ -64,6 +62,7 @@ public class JWTFilter extends OncePerRequestFilter {
                         SecurityContextHolder.getContext().setAuthentication(authToken);
                     }
                 } catch (JWTVerificationException e) {
+                    event.commit(0, "invalid");
                     setResponse(response, request, "Invalid JWT token");
                     return;
                 }
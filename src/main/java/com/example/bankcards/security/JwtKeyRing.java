@@ -0,0 +1,69 @@
+package com.example.bankcards.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTCreator;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * HMAC keys of one token type, identified by the "kid" header. New tokens are signed with the active key,
+ * tokens signed with a retired key are still accepted, so a key can be rotated without logging users out.
+ * Algorithm and JWTVerifier instances are immutable and thread-safe, they are built once per key.
+ */
+public class JwtKeyRing {
+
+    private final String activeKeyId;
+    private final Algorithm signingAlgorithm;
+    private final Map<String, JWTVerifier> verifiers = new HashMap<>();
+    // Tokens issued before key ids were introduced have no kid and were signed with the active secret
+    private final JWTVerifier defaultVerifier;
+
+    // Retired keys are given as "key-id:secret"
+    public JwtKeyRing(String activeKeyId, String activeSecret, String[] retiredKeys, String subject, String issuer) {
+        this.activeKeyId = activeKeyId;
+        this.signingAlgorithm = Algorithm.HMAC256(activeSecret);
+        this.defaultVerifier = buildVerifier(signingAlgorithm, subject, issuer);
+        verifiers.put(activeKeyId, defaultVerifier);
+
+        for (String retiredKey : retiredKeys) {
+            int separator = retiredKey.indexOf(':');
+            if (separator <= 0 || separator == retiredKey.length() - 1) {
+                throw new IllegalArgumentException("Retired JWT key must be specified as key-id:secret");
+            }
+            String keyId = retiredKey.substring(0, separator);
+            if (verifiers.containsKey(keyId)) {
+                throw new IllegalArgumentException("Duplicate JWT key id " + keyId);
+            }
+            Algorithm algorithm = Algorithm.HMAC256(retiredKey.substring(separator + 1));
+            verifiers.put(keyId, buildVerifier(algorithm, subject, issuer));
+        }
+    }
+
+    public String sign(JWTCreator.Builder token) {
+        return token.withKeyId(activeKeyId).sign(signingAlgorithm);
+    }
+
+    // The token is decoded once, its kid selects the verifier
+    public DecodedJWT verify(String token) throws JWTVerificationException {
+        DecodedJWT decoded = JWT.decode(token);
+        String keyId = decoded.getKeyId();
+        JWTVerifier verifier = keyId == null ? defaultVerifier : verifiers.get(keyId);
+        if (verifier == null) {
+            throw new JWTVerificationException("Unknown JWT key id");
+        }
+        return verifier.verify(decoded);
+    }
+
+    private static JWTVerifier buildVerifier(Algorithm algorithm, String subject, String issuer) {
+        return JWT.require(algorithm)
+                .withSubject(subject)
+                .withIssuer(issuer)
+                .build();
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.example.bankcards.security;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.example.bankcards.service.TokenService;
+import com.example.bankcards.util.LruCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.HexFormat;
+
+/**
+ * Access tokens that already passed verification, mapped to their principal, so a client that sends
+ * the same token on every request pays for the signature check and claim decoding only once.
+ * Entries are keyed by the SHA-256 digest of the token and are not returned after the token's exp claim.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private final TokenService tokenService;
+    private final LruCache<String, VerifiedToken> tokens;
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer verificationTimer;
+
+    @Autowired
+    public VerifiedTokenCache(
+            TokenService tokenService,
+            MeterRegistry meterRegistry,
+            @Value("${spring.auth.token-cache.max-size:10000}") int maxSize
+    ) {
+        this.tokenService = tokenService;
+        this.tokens = new LruCache<>(maxSize);
+        this.hits = meterRegistry.counter("bank.auth.token-cache", "result", "hit");
+        this.misses = meterRegistry.counter("bank.auth.token-cache", "result", "miss");
+        this.verificationTimer = meterRegistry.timer("bank.auth.token.verification");
+        Gauge.builder("bank.auth.token-cache.size", tokens, LruCache::size).register(meterRegistry);
+    }
+
+    public UserPrincipal authenticate(String token) throws JWTVerificationException {
+        String digest = digest(token);
+        VerifiedToken cached = tokens.get(digest);
+        if (cached != null) {
+            if (System.currentTimeMillis() < cached.expiresAt()) {
+                hits.increment();
+                return cached.principal();
+            }
+            tokens.remove(digest);
+        }
+        misses.increment();
+
+        DecodedJWT jwt = verificationTimer.record(() -> tokenService.validateAccessToken(token));
+        UserPrincipal principal = new UserPrincipal(
+                jwt.getClaim("id").asLong(),
+                jwt.getClaim("username").asString(),
+                jwt.getClaim("role").asString()
+        );
+        // Tokens without exp never expire on their own, they are not cached
+        Date expiresAt = jwt.getExpiresAt();
+        if (expiresAt != null) {
+            tokens.put(digest, new VerifiedToken(principal, expiresAt.getTime()));
+        }
+        return principal;
+    }
+
+    private String digest(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record VerifiedToken(UserPrincipal principal, long expiresAt) {
+    }
+
+}
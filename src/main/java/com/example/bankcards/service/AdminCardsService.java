@@ -26,17 +26,23 @@ public class AdminCardsService {
     private final BankModelMapper bankModelMapper;
     private final AdminUsersService adminUsersService;
     private final CardNumberCrypto cardNumberCrypto;
+    private final CardBalanceService cardBalanceService;
+    private final CardCountCache cardCountCache;
 
     public AdminCardsService(
             CardsRepository cardsRepository,
             BankModelMapper bankModelMapper,
             AdminUsersService adminUsersService,
-            CardNumberCrypto cardNumberCrypto
+            CardNumberCrypto cardNumberCrypto,
+            CardBalanceService cardBalanceService,
+            CardCountCache cardCountCache
     ) {
         this.cardsRepository = cardsRepository;
         this.bankModelMapper = bankModelMapper;
         this.adminUsersService = adminUsersService;
         this.cardNumberCrypto = cardNumberCrypto;
+        this.cardBalanceService = cardBalanceService;
+        this.cardCountCache = cardCountCache;
     }
 
     public CardResponse findOne(Long id) {
@@ -59,6 +65,8 @@ public class AdminCardsService {
         Date expiresAt = Date.from(ZonedDateTime.now().plusYears(4).toInstant());
         Card card = new Card(
                 cardNumberCrypto.encrypt(cardNumber),
+                cardNumberCrypto.hash(cardNumber),
+                CardNumberCrypto.lastFour(cardNumber),
                 owner,
                 expiresAt,
                 CardStatus.ACTIVE,
@@ -66,6 +74,7 @@ public class AdminCardsService {
         );
 
         cardsRepository.save(card);
+        cardCountCache.invalidate(userId);
     }
 
     @Transactional
@@ -75,6 +84,17 @@ public class AdminCardsService {
             throw new CardNotFoundException("Card not found");
         }
         card.get().setStatus(status);
+        cardCountCache.invalidate(card.get().getOwner().getId());
+    }
+
+    @Transactional
+    public void setBalanceSlots(Long id, int slots) {
+        // The write lock waits for running transfers that hold a shared lock on the card
+        Optional<Card> card = cardsRepository.findForUpdateById(id);
+        if (card.isEmpty()) {
+            throw new CardNotFoundException("Card not found");
+        }
+        cardBalanceService.changeSlots(card.get(), slots);
     }
 
     @Transactional
@@ -84,15 +104,23 @@ public class AdminCardsService {
             throw new CardNotFoundException("Card not found");
         }
         cardsRepository.deleteById(id);
+        cardCountCache.invalidate(card.get().getOwner().getId());
     }
 
     private CardResponse createCardResponse(Card card, Long userId) {
         CardResponse cardResponse = bankModelMapper.convertToCardResponse(card);
-        String decryptedCardNumber = cardNumberCrypto.decrypt(card.getCardNumber());
-        String maskedCardNumber = cardNumberCrypto.transformToMaskedNumber(decryptedCardNumber);
-        cardResponse.setCardNumber(maskedCardNumber);
+        cardResponse.setCardNumber(maskCardNumber(card));
         cardResponse.setOwnerId(userId);
+        cardResponse.setBalance(cardBalanceService.getBalance(card));
         return cardResponse;
     }
 
+    private String maskCardNumber(Card card) {
+        if (card.getCardLast4() != null) {
+            return cardNumberCrypto.maskLastFour(card.getCardLast4());
+        }
+        // Not backfilled yet
+        return cardNumberCrypto.transformToMaskedNumber(cardNumberCrypto.decrypt(card.getCardNumber()));
+    }
+
 }
@@ -1,44 +1,44 @@
 package com.example.bankcards.service;
 
-import com.example.bankcards.entity.RefreshToken;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.enums.Role;
 import com.example.bankcards.exception.*;
-import com.example.bankcards.repository.RefreshTokensRepository;
 import com.example.bankcards.repository.UsersRepository;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
+// BCrypt takes tens of milliseconds and may wait in the hashing queue, so this service runs no transactions
+// of its own: an entity manager bound to a transaction, even a suspended one, keeps its pooled connection
+// until the end of the scope. The reads and writes around the hashing are short transactions of the
+// repository and refresh token store methods themselves, and no connection is held while hashing
 @Service
-@Transactional(readOnly = true)
 public class AuthService {
 
     private final UsersRepository usersRepository;
-    private final PasswordEncoder passwordEncoder;
-    private final RefreshTokensRepository refreshTokensRepository;
+    private final PasswordHashingService passwordHashingService;
+    private final RefreshTokenStore refreshTokenStore;
 
     @Autowired
-    public AuthService(UsersRepository usersRepository, PasswordEncoder passwordEncoder, RefreshTokensRepository refreshTokensRepository) {
+    public AuthService(UsersRepository usersRepository, PasswordHashingService passwordHashingService, RefreshTokenStore refreshTokenStore) {
         this.usersRepository = usersRepository;
-        this.passwordEncoder = passwordEncoder;
-        this.refreshTokensRepository = refreshTokensRepository;
+        this.passwordHashingService = passwordHashingService;
+        this.refreshTokenStore = refreshTokenStore;
     }
 
-    @Transactional
     public void register(User user) {
         if (usersRepository.existsByUsername(user.getUsername())) {
             throw new UserExistsException("Such username already exists");
         }
 
-        user.setPassword(passwordEncoder.encode(user.getPassword()));
+        user.setPassword(passwordHashingService.encode(user.getPassword()));
         user.setRole(Role.USER);
         usersRepository.save(user);
     }
 
+    @Timed(value = "bank.auth.credentials-check", histogram = true)
     public User checkAndGet(User user) {
         Optional<User> optionalUser = usersRepository.findByUsername(user.getUsername());
         if (optionalUser.isEmpty()) {
@@ -47,27 +47,29 @@ public class AuthService {
 
         User userFound = optionalUser.get();
 
-        if (!passwordEncoder.matches(user.getPassword(), userFound.getPassword())) {
+        if (!passwordHashingService.matches(user.getPassword(), userFound.getPassword())) {
             throw new InvalidCredentialsException("Wrong credentials");
         }
+
+        // The raw password is only known here, so a hash made with another BCrypt cost is replaced on login
+        if (passwordHashingService.needsRehash(userFound.getPassword())) {
+            try {
+                String password = passwordHashingService.encode(user.getPassword());
+                usersRepository.updatePassword(userFound.getId(), password);
+                userFound.setPassword(password);
+            } catch (PasswordHashingBusyException e) {
+                // The login itself succeeded, the hash is replaced on a later login
+            }
+        }
         return userFound;
     }
 
-    public RefreshToken findRefreshToken(Long userId) {
-        Optional<RefreshToken> refreshTokenOptional = refreshTokensRepository.findByUserId(userId);
-        return refreshTokenOptional.orElse(null);
+    public boolean isCurrentRefreshToken(Long userId, String refreshToken) {
+        return refreshTokenStore.matches(userId, refreshToken);
     }
 
-    @Transactional
     public void updateRefreshToken(Long userId, String newRefreshToken) {
-        Optional<RefreshToken> refreshToken = refreshTokensRepository.findByUserId(userId);
-        // If DB does not store refresh token for this user, then
-        // it just will be saved in DB
-        if (refreshToken.isPresent()) {
-            refreshToken.get().setRefreshToken(newRefreshToken);
-        } else {
-            refreshTokensRepository.save(new RefreshToken(userId, newRefreshToken));
-        }
+        refreshTokenStore.save(userId, newRefreshToken);
     }
 
 }
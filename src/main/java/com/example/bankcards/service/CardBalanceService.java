@@ -0,0 +1,184 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardBalanceSlot;
+import com.example.bankcards.exception.CardInsufficientFunds;
+import com.example.bankcards.repository.CardBalanceSlotsRepository;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+// The balance of a card is stored either in card.balance or, for a sharded card,
+// split across card.balanceSlots rows of card_balance_slot. Sharded cards keep
+// card.balance at zero, so every incoming transfer updates only one random slot row
+// and transfers to a hot card do not queue behind a single row lock. Slot changes
+// are collected in SlotChanges and written at the end of the transaction by apply
+@Service
+public class CardBalanceService {
+
+    private final CardBalanceSlotsRepository slotsRepository;
+
+    public CardBalanceService(CardBalanceSlotsRepository slotsRepository) {
+        this.slotsRepository = slotsRepository;
+    }
+
+    public BigDecimal getBalance(Card card) {
+        if (card.getBalanceSlots() == 0) {
+            return card.getBalance();
+        }
+        return slotsRepository.sumBalanceByCardId(card.getId());
+    }
+
+    public void debit(Card card, BigDecimal amount, SlotChanges changes) {
+        if (card.getBalanceSlots() == 0) {
+            BigDecimal newBalance = card.getBalance().subtract(amount);
+            if (newBalance.compareTo(BigDecimal.ZERO) < 0) {
+                throw new CardInsufficientFunds("Insufficient funds");
+            }
+            card.setBalance(newBalance);
+            return;
+        }
+
+        List<BigDecimal> balances = changes.balances(card, slotsRepository);
+        if (sum(balances).compareTo(amount) < 0) {
+            throw new CardInsufficientFunds("Insufficient funds");
+        }
+        // Slots are tried starting from a random one, so concurrent debits spread over the rows
+        int slots = balances.size();
+        int start = ThreadLocalRandom.current().nextInt(slots);
+        for (int i = 0; i < slots; i++) {
+            int slot = (start + i) % slots;
+            if (balances.get(slot).compareTo(amount) >= 0) {
+                changes.add(card.getId(), slot, amount.negate());
+                return;
+            }
+        }
+
+        // No single slot holds the whole amount: drain the slots in order
+        BigDecimal remaining = amount;
+        for (int slot = 0; slot < slots && remaining.signum() > 0; slot++) {
+            BigDecimal part = balances.get(slot).min(remaining);
+            if (part.signum() > 0) {
+                changes.add(card.getId(), slot, part.negate());
+                remaining = remaining.subtract(part);
+            }
+        }
+    }
+
+    public void credit(Card card, BigDecimal amount, SlotChanges changes) {
+        if (card.getBalanceSlots() == 0) {
+            card.setBalance(card.getBalance().add(amount));
+            return;
+        }
+
+        changes.add(card.getId(), ThreadLocalRandom.current().nextInt(card.getBalanceSlots()), amount);
+    }
+
+    // Writes the collected changes in (card id, slot) order. Every transaction that changes slots
+    // takes their row locks in this order and after all other locks, so transfers in opposite
+    // directions between sharded cards and batches touching a card several times cannot deadlock.
+    // A debit is applied only if the slot still holds the amount, a concurrent debit that drained
+    // the slot since it was read fails the transaction to be retried
+    public void apply(SlotChanges changes) {
+        for (Map.Entry<SlotKey, BigDecimal> change : changes.changes.entrySet()) {
+            SlotKey key = change.getKey();
+            BigDecimal delta = change.getValue();
+            boolean applied = switch (delta.signum()) {
+                case 1 -> slotsRepository.credit(key.cardId(), key.slot(), delta);
+                case -1 -> slotsRepository.debit(key.cardId(), key.slot(), delta.negate());
+                default -> true;
+            };
+            if (!applied) {
+                throw new OptimisticLockingFailureException("Balance slots of the card were changed concurrently");
+            }
+        }
+        changes.changes.clear();
+    }
+
+    // The caller must hold a write lock on the card row: the whole balance is collected
+    // from the locked slots and spread evenly over the new number of slots
+    public void changeSlots(Card card, int slots) {
+        BigDecimal total = card.getBalance();
+        if (card.getBalanceSlots() > 0) {
+            total = total.add(sum(lockSlots(card)));
+            slotsRepository.deleteAllByCardId(card.getId());
+        }
+
+        if (slots == 0) {
+            card.setBalance(total);
+        } else {
+            BigDecimal share = total.divide(BigDecimal.valueOf(slots), 2, RoundingMode.DOWN);
+            BigDecimal remainder = total.subtract(share.multiply(BigDecimal.valueOf(slots)));
+            List<CardBalanceSlot> balanceSlots = new ArrayList<>(slots);
+            for (int slot = 0; slot < slots; slot++) {
+                balanceSlots.add(new CardBalanceSlot(card.getId(), slot, slot == 0 ? share.add(remainder) : share));
+            }
+            slotsRepository.saveAll(balanceSlots);
+            card.setBalance(BigDecimal.ZERO.setScale(2));
+        }
+        card.setBalanceSlots(slots);
+    }
+
+    private List<BigDecimal> lockSlots(Card card) {
+        List<BigDecimal> balances = slotsRepository.lockBalances(card.getId());
+        if (balances.size() != card.getBalanceSlots()) {
+            throw new OptimisticLockingFailureException("Balance slots of the card were changed concurrently");
+        }
+        return balances;
+    }
+
+    private BigDecimal sum(List<BigDecimal> balances) {
+        return balances.stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private record SlotKey(long cardId, int slot) implements Comparable<SlotKey> {
+
+        private static final Comparator<SlotKey> ORDER =
+                Comparator.comparingLong(SlotKey::cardId).thenComparingInt(SlotKey::slot);
+
+        @Override
+        public int compareTo(SlotKey other) {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    // Slot balance changes of one transaction, written together by apply. The balances of the
+    // sharded cards the transaction debits are read once, without locks, and kept up to date
+    // with the changes collected so far
+    public static final class SlotChanges {
+
+        private final SortedMap<SlotKey, BigDecimal> changes = new TreeMap<>();
+        private final Map<Long, List<BigDecimal>> balances = new HashMap<>();
+
+        private List<BigDecimal> balances(Card card, CardBalanceSlotsRepository slotsRepository) {
+            List<BigDecimal> cardBalances = balances.get(card.getId());
+            if (cardBalances == null) {
+                cardBalances = new ArrayList<>(slotsRepository.findBalances(card.getId()));
+                if (cardBalances.size() != card.getBalanceSlots()) {
+                    throw new OptimisticLockingFailureException("Balance slots of the card were changed concurrently");
+                }
+                for (Map.Entry<SlotKey, BigDecimal> change : changes.entrySet()) {
+                    if (change.getKey().cardId() == card.getId()) {
+                        int slot = change.getKey().slot();
+                        cardBalances.set(slot, cardBalances.get(slot).add(change.getValue()));
+                    }
+                }
+                balances.put(card.getId(), cardBalances);
+            }
+            return cardBalances;
+        }
+
+        private void add(Long cardId, int slot, BigDecimal delta) {
+            changes.merge(new SlotKey(cardId, slot), delta, BigDecimal::add);
+            List<BigDecimal> cardBalances = balances.get(cardId);
+            if (cardBalances != null) {
+                cardBalances.set(slot, cardBalances.get(slot).add(delta));
+            }
+        }
+    }
+
+}
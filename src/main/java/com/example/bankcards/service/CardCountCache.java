@@ -0,0 +1,74 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.enums.CardStatus;
+import com.example.bankcards.util.LruCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Short-lived per-owner card counts used for the totals of card listings, so paging through
+ * the cards of an owner does not run a count query for every page.
+ * Counts are cached per status filter; creating, deleting a card or changing its status
+ * invalidates every count of the owner.
+ */
+@Service
+public class CardCountCache {
+
+    // Key of the count without a status filter
+    private static final String ALL_STATUSES = "";
+
+    private final LruCache<Long, Map<String, CachedCount>> counts;
+    private final long ttlNanos;
+
+    @Autowired
+    public CardCountCache(
+            @Value("${spring.cards.count-cache.max-owners:10000}") int maxOwners,
+            @Value("${spring.cards.count-cache.ttl-ms:5000}") long ttlMs
+    ) {
+        this.counts = new LruCache<>(maxOwners);
+        this.ttlNanos = ttlMs * 1_000_000;
+    }
+
+    public long count(Long ownerId, CardStatus status, LongSupplier counter) {
+        String key = status == null ? ALL_STATUSES : status.name();
+        Map<String, CachedCount> ownerCounts = counts.get(ownerId);
+        long now = System.nanoTime();
+        if (ownerCounts != null) {
+            CachedCount cached = ownerCounts.get(key);
+            if (cached != null && now - cached.countedAt() < ttlNanos) {
+                return cached.count();
+            }
+        } else {
+            ownerCounts = new ConcurrentHashMap<>();
+            counts.put(ownerId, ownerCounts);
+        }
+
+        long count = counter.getAsLong();
+        ownerCounts.put(key, new CachedCount(count, now));
+        return count;
+    }
+
+    // Called inside the transaction that changes the cards: the counts are dropped right away and
+    // once more after commit, so a count read from the old state in between is not kept for the whole TTL
+    public void invalidate(Long ownerId) {
+        counts.remove(ownerId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    counts.remove(ownerId);
+                }
+            });
+        }
+    }
+
+    private record CachedCount(long count, long countedAt) {
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.CardsRepository;
+import com.example.bankcards.util.CardNumberCrypto;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Fills card_number_hash and card_last4 of cards created before the columns existed.
+// Both are derived from the plain card number, which only the application can decrypt.
+// Every batch runs in its own transaction, so a large table is not locked at once.
+// Transfers find cards only by card_number_hash, so the backfill runs once all singletons are created
+// and before the web server is started: the application serves no request until it is complete
+@Component
+public class CardNumberBackfill implements SmartInitializingSingleton {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final CardsRepository cardsRepository;
+    private final CardNumberCrypto cardNumberCrypto;
+    private final TransactionTemplate transactionTemplate;
+
+    public CardNumberBackfill(
+            CardsRepository cardsRepository,
+            CardNumberCrypto cardNumberCrypto,
+            TransactionTemplate transactionTemplate
+    ) {
+        this.cardsRepository = cardsRepository;
+        this.cardNumberCrypto = cardNumberCrypto;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        Integer updated;
+        do {
+            updated = transactionTemplate.execute(status -> {
+                // Updated cards drop out of the query, so the first page is always the next batch
+                Slice<Card> cards = cardsRepository.findAllByCardNumberHashIsNullOrCardLast4IsNull(PageRequest.of(0, BATCH_SIZE));
+                for (Card card : cards) {
+                    String cardNumber = cardNumberCrypto.decrypt(card.getCardNumber());
+                    card.setCardNumberHash(cardNumberCrypto.hash(cardNumber));
+                    card.setCardLast4(CardNumberCrypto.lastFour(cardNumber));
+                }
+                return cards.getNumberOfElements();
+            });
+        } while (updated != null && updated == BATCH_SIZE);
+    }
+
+}
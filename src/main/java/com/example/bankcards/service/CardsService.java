@@ -3,39 +3,65 @@ package com.example.bankcards.service;
 import com.example.bankcards.dto.CardNumberResponse;
 import com.example.bankcards.dto.CardResponse;
 import com.example.bankcards.dto.PageResponse;
+import com.example.bankcards.dto.TransactionResponse;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.enums.CardStatus;
+import com.example.bankcards.enums.TransactionDirection;
 import com.example.bankcards.exception.*;
+import com.example.bankcards.projections.CardSummary;
+import com.example.bankcards.projections.TransactionSummary;
 import com.example.bankcards.repository.CardsRepository;
+import com.example.bankcards.repository.TransactionsRepository;
 import com.example.bankcards.specifications.CardSpecifications;
 import com.example.bankcards.util.BankModelMapper;
 import com.example.bankcards.util.CardNumberCrypto;
+import com.example.bankcards.util.PageCursor;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
 import java.util.*;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
 
 @Service
 @Transactional
 public class CardsService {
 
+    static final String BALANCE = "balance";
+    static final String EXECUTED_AT = "executedAt";
+    static final int MAX_STATEMENT_LIMIT = 100;
+
     private final CardsRepository cardsRepository;
     private final CardNumberCrypto cardNumberCrypto;
     private final BankModelMapper bankModelMapper;
+    private final CardBalanceService cardBalanceService;
+    private final CardCountCache cardCountCache;
+    private final TransactionsRepository transactionsRepository;
 
     public CardsService(
             CardsRepository cardsRepository,
             CardNumberCrypto cardNumberCrypto,
-            BankModelMapper bankModelMapper) {
+            BankModelMapper bankModelMapper,
+            CardBalanceService cardBalanceService,
+            CardCountCache cardCountCache,
+            TransactionsRepository transactionsRepository) {
         this.cardsRepository = cardsRepository;
         this.cardNumberCrypto = cardNumberCrypto;
         this.bankModelMapper = bankModelMapper;
+        this.cardBalanceService = cardBalanceService;
+        this.cardCountCache = cardCountCache;
+        this.transactionsRepository = transactionsRepository;
     }
 
     public CardResponse findOne(Long id, Long userId) {
@@ -53,13 +79,15 @@ public class CardsService {
     public void requestBlocking(Long id, Long userId) {
         Card card = checkAuthorityAndGet(id, userId);
         card.setStatus(CardStatus.BLOCK_REQUESTED);
+        cardCountCache.invalidate(userId);
     }
 
     public BigDecimal getBalance(Long id, Long userId) {
         Card card = checkAuthorityAndGet(id, userId);
-        return card.getBalance();
+        return cardBalanceService.getBalance(card);
     }
 
+    @Timed(value = "bank.cards.list", histogram = true)
     public PageResponse<CardResponse> getUserCards(
             Long userId,
             int page,
@@ -67,30 +95,50 @@ public class CardsService {
             String[] sort,
             CardStatus cardStatus,
             BigDecimal minBalance,
-            BigDecimal maxBalance
+            BigDecimal maxBalance,
+            String cursor,
+            boolean withTotal
     ) {
-        Sort sorting = Sort.by(createOrders(sort));
-        Pageable pageable = PageRequest.of(page, limit, sorting);
-
         Specification<Card> specification = Specification.allOf(CardSpecifications.byUserId(userId));
+        List<Sort.Order> orders = createOrders(sort);
+
+        // card.balance of a sharded card is zero, so filters and sorting by balance compare the sum of
+        // its slots instead. That sum has no index, the column is used when the owner has no sharded cards
+        boolean byBalance = minBalance != null || maxBalance != null
+                || orders.stream().anyMatch(order -> order.getProperty().equals(BALANCE));
+        boolean slotBalances = byBalance && cardsRepository.hasShardedCards(userId);
 
         if (cardStatus != null) {
             specification = specification.and(CardSpecifications.hasStatus(cardStatus));
         }
         if (minBalance != null) {
-            specification = specification.and(CardSpecifications.balanceGreaterThan(minBalance));
+            specification = specification.and(CardSpecifications.balanceGreaterThan(minBalance, slotBalances));
         }
         if (maxBalance != null) {
-            specification = specification.and(CardSpecifications.balanceLessThan(maxBalance));
+            specification = specification.and(CardSpecifications.balanceLessThan(maxBalance, slotBalances));
         }
 
-        Page<Card> cardsPage = cardsRepository.findAll(specification, pageable);
-        List<CardResponse> cardResponses = new ArrayList<>();
-        for (Card card : cardsPage.getContent()) {
-            CardResponse cardResponse = createCardResponse(card, userId);
-            cardResponses.add(cardResponse);
+        if (cursor != null) {
+            return getUserCardsAfterCursor(limit, orders, specification, cursor, slotBalances);
+        }
+
+        Pageable pageable = PageRequest.of(page, limit, Sort.by(orders));
+
+        // The page is read as a slice of limit + 1 rows, the total only when requested
+        Slice<CardSummary> cardsSlice = cardsRepository.findSummaries(specification, pageable, slotBalances);
+        List<CardResponse> cardResponses = createCardResponses(cardsSlice.getContent());
+
+        if (!withTotal) {
+            return new PageResponse<>(cardResponses, page, limit, cardsSlice.hasNext());
         }
 
+        Specification<Card> countSpecification = specification;
+        // Balance filters change with every transfer, so only counts by owner and status are cached
+        LongSupplier counter = minBalance == null && maxBalance == null
+                ? () -> cardCountCache.count(userId, cardStatus, () -> cardsRepository.count(countSpecification))
+                : () -> cardsRepository.count(countSpecification);
+        Page<CardSummary> cardsPage = PageableExecutionUtils.getPage(cardsSlice.getContent(), pageable, counter);
+
         return new PageResponse<>(
                 cardResponses,
                 page,
@@ -100,15 +148,122 @@ public class CardsService {
         );
     }
 
+    // Keyset pagination: the page starts right after the (sort key, id) of the cursor instead of
+    // skipping an offset, so a deep page costs as much as the first one. One extra row is fetched
+    // to know whether there is a next page, no count query is run. An empty cursor starts the listing
+    private PageResponse<CardResponse> getUserCardsAfterCursor(
+            int limit,
+            List<Sort.Order> orders,
+            Specification<Card> specification,
+            String cursor,
+            boolean slotBalances
+    ) {
+        if (orders.size() != 1) {
+            throw new InvalidCursorException("Cursor pagination supports exactly one sort property");
+        }
+        Sort.Order order = orders.get(0);
+        KeysetProperty property = KeysetProperty.of(order.getProperty());
+
+        if (!cursor.isEmpty()) {
+            PageCursor pageCursor = PageCursor.decode(cursor);
+            if (!pageCursor.property().equals(order.getProperty()) || pageCursor.direction() != order.getDirection()) {
+                throw new InvalidCursorException("Cursor does not match the requested sort");
+            }
+            specification = specification.and(property.after(pageCursor, slotBalances));
+        }
+
+        // The id breaks ties between equal sort keys, so the order of the rows is total
+        Sort sorting = property == KeysetProperty.ID
+                ? Sort.by(order)
+                : Sort.by(order, new Sort.Order(order.getDirection(), "id"));
+        Slice<CardSummary> cards = cardsRepository.findSummaries(specification, PageRequest.of(0, limit, sorting), slotBalances);
+
+        List<CardResponse> cardResponses = createCardResponses(cards.getContent());
+
+        String nextCursor = null;
+        if (cards.hasNext()) {
+            CardSummary last = cards.getContent().get(cards.getNumberOfElements() - 1);
+            nextCursor = new PageCursor(order.getProperty(), order.getDirection(), property.valueOf(last), last.id()).encode();
+        }
+        return new PageResponse<>(cardResponses, limit, nextCursor);
+    }
+
+    // Statement of the card, newest first, in keyset pagination on (executedAt, id) like the card listing:
+    // an empty cursor starts at the newest transaction, the next page starts after the last returned one
+    @Transactional(readOnly = true)
+    public PageResponse<TransactionResponse> getCardTransactions(
+            Long id,
+            Long userId,
+            int limit,
+            TransactionDirection direction,
+            Instant from,
+            Instant to,
+            String cursor
+    ) {
+        Card card = checkAuthorityAndGet(id, userId);
+        int pageLimit = Math.clamp(limit, 1, MAX_STATEMENT_LIMIT);
+
+        Instant afterExecutedAt = null;
+        Long afterId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            PageCursor pageCursor = PageCursor.decode(cursor);
+            if (!pageCursor.property().equals(EXECUTED_AT) || pageCursor.direction() != Sort.Direction.DESC) {
+                throw new InvalidCursorException("Cursor does not match the requested sort");
+            }
+            try {
+                afterExecutedAt = Instant.parse(pageCursor.value());
+            } catch (RuntimeException e) {
+                throw new InvalidCursorException("Invalid cursor");
+            }
+            afterId = pageCursor.id();
+        }
+
+        // One extra row tells whether there is a next page
+        List<TransactionSummary> transactions = transactionsRepository.findStatement(
+                card.getCardNumber(), direction, from, to, afterExecutedAt, afterId, pageLimit + 1);
+        boolean hasNext = transactions.size() > pageLimit;
+        if (hasNext) {
+            transactions = transactions.subList(0, pageLimit);
+        }
+
+        List<TransactionResponse> responses = new ArrayList<>(transactions.size());
+        for (TransactionSummary transaction : transactions) {
+            TransactionResponse response = bankModelMapper.convertToTransactionResponse(transaction);
+            response.setCounterpartCardNumber(
+                    maskCardNumber(transaction.counterpartLast4(), transaction.counterpartCardNumber()));
+            responses.add(response);
+        }
+
+        String nextCursor = null;
+        if (hasNext) {
+            TransactionSummary last = transactions.get(transactions.size() - 1);
+            // Instant keeps the sub-millisecond part of the timestamp, so the seek predicate matches the stored value
+            nextCursor = new PageCursor(EXECUTED_AT, Sort.Direction.DESC,
+                    last.executedAt().toInstant().toString(), last.id()).encode();
+        }
+        return new PageResponse<>(responses, pageLimit, nextCursor);
+    }
+
     private CardResponse createCardResponse(Card card, Long userId) {
         CardResponse cardResponse = bankModelMapper.convertToCardResponse(card);
-        String decryptedCardNumber = cardNumberCrypto.decrypt(card.getCardNumber());
-        String maskedCardNumber = cardNumberCrypto.transformToMaskedNumber(decryptedCardNumber);
-        cardResponse.setCardNumber(maskedCardNumber);
+        cardResponse.setCardNumber(maskCardNumber(card.getCardLast4(), card.getCardNumber()));
         cardResponse.setOwnerId(userId);
+        cardResponse.setBalance(cardBalanceService.getBalance(card));
         return cardResponse;
     }
 
+    // The summaries already carry the balance of sharded cards summed from their slots
+    private List<CardResponse> createCardResponses(List<CardSummary> cards) {
+        List<CardResponse> cardResponses = new ArrayList<>(cards.size());
+        for (CardSummary card : cards) {
+            CardResponse cardResponse = bankModelMapper.convertToCardResponse(card);
+            cardResponse.setCardNumber(maskCardNumber(card.cardLast4(), card.cardNumber()));
+            cardResponse.setBalance(card.balance());
+            cardResponses.add(cardResponse);
+        }
+        return cardResponses;
+    }
+
     private List<Sort.Order> createOrders(String[] sort) {
         return Arrays.stream(sort).map(this::parseSort).toList();
     }
@@ -131,4 +286,57 @@ public class CardsService {
         }
         return cardPresent;
     }
+
+    private String maskCardNumber(String cardLast4, String encryptedCardNumber) {
+        if (cardLast4 != null) {
+            return cardNumberCrypto.maskLastFour(cardLast4);
+        }
+        // Not backfilled yet
+        return cardNumberCrypto.transformToMaskedNumber(cardNumberCrypto.decrypt(encryptedCardNumber));
+    }
+
+    // Sort properties supported by cursor pagination, with the conversion of their values to and from the cursor
+    private enum KeysetProperty {
+        ID("id", card -> card.id().toString(), Long::valueOf),
+        BALANCE(CardsService.BALANCE, card -> card.balance().toPlainString(), BigDecimal::new),
+        // Instant keeps the sub-millisecond part of the timestamp, so the seek predicate matches the stored value
+        EXPIRY_DATE("expiryDate", card -> card.expiryDate().toInstant().toString(),
+                value -> Timestamp.from(Instant.parse(value))),
+        STATUS("status", card -> card.status().name(), CardStatus::valueOf);
+
+        private final String property;
+        private final Function<CardSummary, String> formatter;
+        private final Function<String, Comparable<?>> parser;
+
+        KeysetProperty(String property, Function<CardSummary, String> formatter, Function<String, Comparable<?>> parser) {
+            this.property = property;
+            this.formatter = formatter;
+            this.parser = parser;
+        }
+
+        static KeysetProperty of(String property) {
+            return Arrays.stream(values())
+                    .filter(value -> value.property.equals(property))
+                    .findFirst()
+                    .orElseThrow(() -> new InvalidCursorException("Cursor pagination does not support sorting by " + property));
+        }
+
+        String valueOf(CardSummary card) {
+            return formatter.apply(card);
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Specification<Card> after(PageCursor cursor, boolean slotBalances) {
+            Comparable value;
+            try {
+                value = parser.apply(cursor.value());
+            } catch (RuntimeException e) {
+                throw new InvalidCursorException("Invalid cursor");
+            }
+            if (this == BALANCE && slotBalances) {
+                return CardSpecifications.balanceAfter(cursor.direction(), (BigDecimal) value, cursor.id());
+            }
+            return CardSpecifications.after(property, cursor.direction(), value, cursor.id());
+        }
+    }
 }
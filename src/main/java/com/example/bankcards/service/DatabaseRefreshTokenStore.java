@@ -0,0 +1,43 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.RefreshToken;
+import com.example.bankcards.repository.RefreshTokensRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+// Reads and writes the refresh_token table on every call
+@Service
+@ConditionalOnProperty(name = "spring.auth.refresh-tokens.store", havingValue = "database", matchIfMissing = true)
+public class DatabaseRefreshTokenStore implements RefreshTokenStore {
+
+    private final RefreshTokensRepository refreshTokensRepository;
+
+    public DatabaseRefreshTokenStore(RefreshTokensRepository refreshTokensRepository) {
+        this.refreshTokensRepository = refreshTokensRepository;
+    }
+
+    @Override
+    public boolean matches(Long userId, String refreshToken) {
+        return refreshTokensRepository.findByUserId(userId)
+                .map(storedToken -> RefreshTokenStore.hashMatches(storedToken.getRefreshTokenHash(), refreshToken))
+                .orElse(false);
+    }
+
+    @Override
+    @Transactional
+    public void save(Long userId, String refreshToken) {
+        Optional<RefreshToken> storedToken = refreshTokensRepository.findByUserId(userId);
+        // If DB does not store refresh token for this user, then
+        // it just will be saved in DB
+        byte[] refreshTokenHash = RefreshTokenStore.hash(refreshToken);
+        if (storedToken.isPresent()) {
+            storedToken.get().setRefreshTokenHash(refreshTokenHash);
+        } else {
+            refreshTokensRepository.save(new RefreshToken(userId, refreshTokenHash));
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.TransferIdempotencyKey;
+import com.example.bankcards.exception.IdempotencyKeyException;
+import com.example.bankcards.repository.TransferIdempotencyKeysRepository;
+import com.example.bankcards.util.LruCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.Optional;
+
+@Service
+public class IdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 64;
+
+    private final TransferIdempotencyKeysRepository idempotencyKeysRepository;
+    // Recently completed keys mapped to their request hash, so a replay
+    // of a recent request is answered without a database call
+    private final LruCache<String, String> completedKeys;
+    private final Duration retention;
+
+    @Autowired
+    public IdempotencyService(
+            TransferIdempotencyKeysRepository idempotencyKeysRepository,
+            @Value("${spring.transactions.idempotency.cache-size:10000}") int cacheSize,
+            @Value("${spring.transactions.idempotency.retention-hours:24}") long retentionHours
+    ) {
+        this.idempotencyKeysRepository = idempotencyKeysRepository;
+        this.completedKeys = new LruCache<>(cacheSize);
+        this.retention = Duration.ofHours(retentionHours);
+    }
+
+    // The card numbers enter the fingerprint only as their keyed hashes (CardNumberCrypto.hash), so the stored
+    // request hash cannot be brute-forced back to card numbers without the HMAC key
+    public String fingerprint(String fromCardHash, String toCardHash, BigDecimal amount) {
+        String canonical = fromCardHash + "|" + toCardHash + "|" + amount.stripTrailingZeros().toPlainString();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public boolean isCompleted(Long userId, String idempotencyKey, String fingerprint) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IdempotencyKeyException("Idempotency key must contain from 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String cacheKey = cacheKey(userId, idempotencyKey);
+        String requestHash = completedKeys.get(cacheKey);
+        if (requestHash == null) {
+            Optional<TransferIdempotencyKey> stored = idempotencyKeysRepository.findByUserIdAndIdempotencyKey(userId, idempotencyKey);
+            if (stored.isEmpty()) {
+                return false;
+            }
+            requestHash = stored.get().getRequestHash();
+            completedKeys.put(cacheKey, requestHash);
+        }
+
+        if (!requestHash.equals(fingerprint)) {
+            throw new IdempotencyKeyException("Idempotency key was already used for a different transfer");
+        }
+        return true;
+    }
+
+    // Must run inside the transfer's transaction: the unique (user_id, idempotency_key)
+    // constraint makes a concurrent duplicate wait here and then fail instead of transferring twice
+    public void record(Long userId, String idempotencyKey, String fingerprint) {
+        idempotencyKeysRepository.save(new TransferIdempotencyKey(userId, idempotencyKey, fingerprint, new Date()));
+    }
+
+    public void remember(Long userId, String idempotencyKey, String fingerprint) {
+        completedKeys.put(cacheKey(userId, idempotencyKey), fingerprint);
+    }
+
+    @Transactional
+    @Scheduled(
+            initialDelayString = "${spring.transactions.idempotency.purge-interval-ms:3600000}",
+            fixedDelayString = "${spring.transactions.idempotency.purge-interval-ms:3600000}"
+    )
+    public void purgeExpired() {
+        idempotencyKeysRepository.deleteAllCreatedBefore(Date.from(Instant.now().minus(retention)));
+    }
+
+    private String cacheKey(Long userId, String idempotencyKey) {
+        return userId + ":" + idempotencyKey;
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.RefreshToken;
+import com.example.bankcards.repository.RefreshTokensRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Serves refresh tokens from memory and writes changes to the refresh_token table in the background
+// (write-behind), so login and token refresh do not wait for the database. The table is read once
+// at startup. A token saved less than one flush interval before a crash is lost and the user has to
+// log in again. Tokens are not shared between application instances, use the database store when
+// more than one instance serves requests
+@Service
+@ConditionalOnProperty(name = "spring.auth.refresh-tokens.store", havingValue = "memory")
+public class InMemoryRefreshTokenStore implements RefreshTokenStore {
+
+    private static final Logger log = LoggerFactory.getLogger(InMemoryRefreshTokenStore.class);
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    private final RefreshTokensRepository refreshTokensRepository;
+    private final TransactionTemplate transactionTemplate;
+    // Token digests by user id
+    private final Map<Long, byte[]> tokens = new ConcurrentHashMap<>();
+    // Digests saved since the last flush, only the latest one of a user is written
+    private final Map<Long, byte[]> pending = new ConcurrentHashMap<>();
+
+    public InMemoryRefreshTokenStore(RefreshTokensRepository refreshTokensRepository, TransactionTemplate transactionTemplate) {
+        this.refreshTokensRepository = refreshTokensRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @PostConstruct
+    public void load() {
+        Slice<RefreshToken> batch;
+        int page = 0;
+        do {
+            batch = refreshTokensRepository.findAllBy(PageRequest.of(page++, LOAD_BATCH_SIZE, Sort.by("id")));
+            for (RefreshToken refreshToken : batch) {
+                tokens.put(refreshToken.getUserId(), refreshToken.getRefreshTokenHash());
+            }
+        } while (batch.hasNext());
+    }
+
+    @Override
+    public boolean matches(Long userId, String refreshToken) {
+        return RefreshTokenStore.hashMatches(tokens.get(userId), refreshToken);
+    }
+
+    @Override
+    public void save(Long userId, String refreshToken) {
+        byte[] refreshTokenHash = RefreshTokenStore.hash(refreshToken);
+        tokens.put(userId, refreshTokenHash);
+        pending.put(userId, refreshTokenHash);
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${spring.auth.refresh-tokens.flush-interval-ms:1000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<Long, byte[]> batch = new HashMap<>();
+        for (Long userId : pending.keySet()) {
+            byte[] refreshTokenHash = pending.remove(userId);
+            if (refreshTokenHash != null) {
+                batch.put(userId, refreshTokenHash);
+            }
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> persist(batch));
+        } catch (DataIntegrityViolationException e) {
+            // One row the table rejects must not hold back the others, so each token is written on its own
+            batch.forEach(this::flushOne);
+        } catch (RuntimeException e) {
+            // Written again on the next flush, unless the user got a newer token in the meantime
+            batch.forEach(pending::putIfAbsent);
+            throw e;
+        }
+    }
+
+    private void flushOne(Long userId, byte[] refreshTokenHash) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> persist(Map.of(userId, refreshTokenHash)));
+        } catch (DataIntegrityViolationException e) {
+            // Retrying would fail the same way. The token stays valid in memory until the application stops
+            log.error("Dropped the refresh token of user {}, the table rejected it", userId, e);
+        } catch (RuntimeException e) {
+            pending.putIfAbsent(userId, refreshTokenHash);
+        }
+    }
+
+    private void persist(Map<Long, byte[]> batch) {
+        List<RefreshToken> storedTokens = refreshTokensRepository.findAllByUserIdIn(batch.keySet());
+        Map<Long, byte[]> newTokens = new HashMap<>(batch);
+        for (RefreshToken storedToken : storedTokens) {
+            storedToken.setRefreshTokenHash(newTokens.remove(storedToken.getUserId()));
+        }
+        newTokens.forEach((userId, refreshTokenHash) -> refreshTokensRepository.save(new RefreshToken(userId, refreshTokenHash)));
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.example.bankcards.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+// Current refresh token of every user, a user has at most one.
+// Only the SHA-256 digest of a token is kept, a refresh token is a high-entropy signed JWT,
+// so a digest is enough to recognize it and a leaked table does not hand out valid tokens.
+// The implementation is chosen with spring.auth.refresh-tokens.store
+public interface RefreshTokenStore {
+
+    boolean matches(Long userId, String refreshToken);
+
+    void save(Long userId, String refreshToken);
+
+    static byte[] hash(String refreshToken) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(refreshToken.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // Constant-time comparison, the time taken does not tell how many leading bytes match
+    static boolean hashMatches(byte[] storedHash, String refreshToken) {
+        return storedHash != null && MessageDigest.isEqual(storedHash, hash(refreshToken));
+    }
+
+}
@@ -1,11 +1,13 @@
 package com.example.bankcards.service;
 
 import com.auth0.jwt.JWT;
-import com.auth0.jwt.JWTVerifier;
-import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.JWTCreator;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.security.JwtKeyRing;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -15,55 +17,52 @@ import java.util.Date;
 @Service
 public class TokenService {
 
-    @Value("${spring.auth.jwt.access}")
-    private String accessToken;
+    private static final String SUBJECT = "Bank details";
+    private static final String ISSUER = "bank-service";
 
-    @Value("${spring.auth.jwt.refresh}")
-    private String refreshToken;
+    private final JwtKeyRing accessKeys;
+    private final JwtKeyRing refreshKeys;
+
+    @Autowired
+    public TokenService(
+            @Value("${spring.auth.jwt.access}") String accessSecret,
+            @Value("${spring.auth.jwt.refresh}") String refreshSecret,
+            @Value("${spring.auth.jwt.key-id:1}") String keyId,
+            @Value("${spring.auth.jwt.retired-access-keys:}") String[] retiredAccessKeys,
+            @Value("${spring.auth.jwt.retired-refresh-keys:}") String[] retiredRefreshKeys
+    ) {
+        this.accessKeys = new JwtKeyRing(keyId, accessSecret, retiredAccessKeys, SUBJECT, ISSUER);
+        this.refreshKeys = new JwtKeyRing(keyId, refreshSecret, retiredRefreshKeys, SUBJECT, ISSUER);
+    }
 
     public String generateAccessToken(User user) {
         Date expiresAt = Date.from(ZonedDateTime.now().plusMinutes(15).toInstant());
-
-        return JWT.create()
-                .withSubject("Bank details")
-                .withClaim("id", user.getId())
-                .withClaim("username", user.getUsername())
-                .withClaim("role", user.getRole().toString())
-                .withIssuedAt(new Date())
-                .withIssuer("bank-service")
-                .withExpiresAt(expiresAt)
-                .sign(Algorithm.HMAC256(accessToken));
+        return accessKeys.sign(createToken(user, expiresAt));
     }
 
     public String generateRefreshToken(User user) {
         Date expiresAt = Date.from(ZonedDateTime.now().plusDays(30).toInstant());
-
-        return JWT.create()
-                .withSubject("Bank details")
-                .withClaim("id", user.getId())
-                .withClaim("username", user.getUsername())
-                .withClaim("role", user.getRole().toString())
-                .withIssuedAt(new Date())
-                .withIssuer("bank-service")
-                .withExpiresAt(expiresAt)
-                .sign(Algorithm.HMAC256(refreshToken));
+        return refreshKeys.sign(createToken(user, expiresAt));
     }
 
-    public DecodedJWT validateAccessToken(String token) {
-        return validateToken(token, accessToken);
+    @Timed(value = "bank.auth.access-token.validation", histogram = true)
+    public DecodedJWT validateAccessToken(String token) throws JWTVerificationException {
+        return accessKeys.verify(token);
     }
 
-    public DecodedJWT validateRefreshToken(String token) {
-        return validateToken(token, refreshToken);
+    public DecodedJWT validateRefreshToken(String token) throws JWTVerificationException {
+        return refreshKeys.verify(token);
     }
 
-    public DecodedJWT validateToken(String token, String secret) throws JWTVerificationException {
-        JWTVerifier verifier = JWT.require(Algorithm.HMAC256(secret))
-                .withSubject("Bank details")
-                .withIssuer("bank-service")
-                .build();
-
-        return verifier.verify(token);
+    private JWTCreator.Builder createToken(User user, Date expiresAt) {
+        return JWT.create()
+                .withSubject(SUBJECT)
+                .withClaim("id", user.getId())
+                .withClaim("username", user.getUsername())
+                .withClaim("role", user.getRole().toString())
+                .withIssuedAt(new Date())
+                .withIssuer(ISSUER)
+                .withExpiresAt(expiresAt);
     }
 
 }
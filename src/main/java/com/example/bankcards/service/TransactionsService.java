@@ -1,19 +1,33 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.BatchTransactionResponse;
+import com.example.bankcards.dto.BatchTransactionResult;
 import com.example.bankcards.dto.TransactionRequest;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.enums.TransferMode;
+import com.example.bankcards.enums.TransferStatus;
 import com.example.bankcards.exception.*;
+import com.example.bankcards.jfr.TransferEvent;
 import com.example.bankcards.repository.CardsRepository;
 import com.example.bankcards.repository.TransactionsRepository;
+import com.example.bankcards.service.CardBalanceService.SlotChanges;
 import com.example.bankcards.util.CardNumberCrypto;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
-import java.util.Date;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntConsumer;
 
 @Service
 public class TransactionsService {
@@ -21,62 +35,292 @@ public class TransactionsService {
     private final CardNumberCrypto cardNumberCrypto;
     private final CardsRepository cardsRepository;
     private final TransactionsRepository transactionsRepository;
+    private final CardBalanceService cardBalanceService;
+    private final TransactionTemplate transactionTemplate;
+    private final IdempotencyService idempotencyService;
+    private final MeterRegistry meterRegistry;
+    private final TransferMode transferMode;
+    private final int maxAttempts;
+    private final long retryBackoffMillis;
 
     @Autowired
     public TransactionsService(
             CardNumberCrypto cardNumberCrypto,
-            CardsRepository cardsRepository, TransactionsRepository transactionsRepository) {
+            CardsRepository cardsRepository,
+            TransactionsRepository transactionsRepository,
+            CardBalanceService cardBalanceService,
+            TransactionTemplate transactionTemplate,
+            IdempotencyService idempotencyService,
+            MeterRegistry meterRegistry,
+            @Value("${spring.transactions.transfer.mode:PESSIMISTIC}") TransferMode transferMode,
+            @Value("${spring.transactions.transfer.max-attempts:5}") int maxAttempts,
+            @Value("${spring.transactions.transfer.retry-backoff-ms:20}") long retryBackoffMillis
+    ) {
         this.cardNumberCrypto = cardNumberCrypto;
         this.cardsRepository = cardsRepository;
         this.transactionsRepository = transactionsRepository;
+        this.cardBalanceService = cardBalanceService;
+        this.transactionTemplate = transactionTemplate;
+        this.idempotencyService = idempotencyService;
+        this.meterRegistry = meterRegistry;
+        this.transferMode = transferMode;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoffMillis = retryBackoffMillis;
     }
 
-    @Transactional
     public void transfer(TransactionRequest request, Long userId) {
-        if (request.getAmount().compareTo(new BigDecimal("0.01")) < 0) {
-            throw new InvalidCurrencyAmount("Amount must be greater than or equal to 0.01");
+        transfer(request, userId, null);
+    }
+
+    // Returns false if the transfer was not executed because a request
+    // with the same idempotency key has already been completed
+    @Timed(value = "bank.transfer", histogram = true)
+    public boolean transfer(TransactionRequest request, Long userId, String idempotencyKey) {
+        validateAmount(request.getAmount());
+
+        TransferEvent event = new TransferEvent();
+        event.begin();
+        event.setRequest(request.getAmount(), transferMode.name(), idempotencyKey != null);
+
+        String fromCardHash = cardNumberCrypto.hash(request.getFromCard());
+        String toCardHash = cardNumberCrypto.hash(request.getToCard());
+
+        String fingerprint = null;
+        if (idempotencyKey != null) {
+            fingerprint = idempotencyService.fingerprint(fromCardHash, toCardHash, request.getAmount());
+            if (idempotencyService.isCompleted(userId, idempotencyKey, fingerprint)) {
+                finishTransfer(event, "replayed");
+                return false;
+            }
         }
-        if (request.getAmount().scale() > 2) {
-            throw new InvalidCurrencyAmount("Amount must have at most 2 decimal places");
+
+        TransferCommand command = new TransferCommand(
+                fromCardHash, toCardHash, request.getAmount(), userId, idempotencyKey, fingerprint
+        );
+        try {
+            executeWithRetry(event::setAttempts, status -> {
+                executeTransfer(command, event);
+                return null;
+            });
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent request with the same idempotency key committed first
+            if (idempotencyKey != null && idempotencyService.isCompleted(userId, idempotencyKey, fingerprint)) {
+                finishTransfer(event, "replayed");
+                return false;
+            }
+            finishTransfer(event, "rejected");
+            throw e;
+        } catch (TransferConflictException e) {
+            finishTransfer(event, "aborted");
+            throw e;
+        } catch (RuntimeException e) {
+            finishTransfer(event, "rejected");
+            throw e;
         }
 
-        String encryptedFromCard = cardNumberCrypto.encrypt(request.getFromCard());
-        String encryptedToCard = cardNumberCrypto.encrypt(request.getToCard());
-        Optional<Card> fromCardOpt = cardsRepository.findByCardNumber(encryptedFromCard);
-        Optional<Card> toCardOpt = cardsRepository.findByCardNumber(encryptedToCard);
-        if (fromCardOpt.isEmpty() || toCardOpt.isEmpty()) {
-            throw new CardNotFoundException("Card not found");
+        if (idempotencyKey != null) {
+            idempotencyService.remember(userId, idempotencyKey, fingerprint);
+        }
+        finishTransfer(event, "completed");
+        return true;
+    }
+
+    public BatchTransactionResponse transferBatch(List<TransactionRequest> requests, Long userId) {
+        // Every distinct card number is hashed only once per batch
+        Map<String, String> cardNumberHashes = new HashMap<>();
+        for (TransactionRequest request : requests) {
+            cardNumberHashes.computeIfAbsent(request.getFromCard(), cardNumberCrypto::hash);
+            cardNumberHashes.computeIfAbsent(request.getToCard(), cardNumberCrypto::hash);
+        }
+
+        List<BatchTransactionResult> results = executeWithRetry(attempt -> { }, status -> {
+            // All cards of the batch are locked by one IN query in ascending id order,
+            // the same order single transfers use, so batches cannot deadlock with them
+            Map<String, Card> cards = new HashMap<>();
+            for (Card card : lockCards(new HashSet<>(cardNumberHashes.values()))) {
+                cards.put(card.getCardNumberHash(), card);
+            }
+
+            List<BatchTransactionResult> itemResults = new ArrayList<>(requests.size());
+            List<Transaction> transactions = new ArrayList<>();
+            SlotChanges slotChanges = new SlotChanges();
+            for (int i = 0; i < requests.size(); i++) {
+                TransactionRequest request = requests.get(i);
+                try {
+                    validateAmount(request.getAmount());
+                    transactions.add(applyTransfer(
+                            cards.get(cardNumberHashes.get(request.getFromCard())),
+                            cards.get(cardNumberHashes.get(request.getToCard())),
+                            request.getAmount(),
+                            userId,
+                            slotChanges
+                    ));
+                    itemResults.add(new BatchTransactionResult(i, TransferStatus.COMPLETED, null));
+                } catch (InvalidCurrencyAmount | CardNotFoundException | NoAuthorityException
+                         | SameCardTransactionException | CardInsufficientFunds e) {
+                    itemResults.add(new BatchTransactionResult(i, TransferStatus.FAILED, e.getMessage()));
+                }
+            }
+
+            // Every slot row the batch changes is written once, however many items touch it
+            cardBalanceService.apply(slotChanges);
+            // Balance updates of the dirty cards are flushed as one JDBC batch at commit
+            transactionsRepository.insertAll(transactions);
+            return itemResults;
+        });
+
+        int completed = (int) results.stream()
+                .filter(result -> result.getStatus() == TransferStatus.COMPLETED)
+                .count();
+        int failed = results.size() - completed;
+        countTransfer("batch", "completed", completed);
+        countTransfer("batch", "rejected", failed);
+        return new BatchTransactionResponse(completed, failed, results);
+    }
+
+    // Optimistic mode reads the cards without row locks and relies on the @Version check at commit time.
+    // Pessimistic mode fails the same way when the balance slots of a card are changed while the transfer
+    // locks it. Such a conflict is retried in a fresh transaction after a jittered backoff, and the
+    // transfer is aborted once maxAttempts is exhausted. A lock the database could not grant, such as
+    // the victim of a deadlock or a lock timeout, is retried the same way
+    private <T> T executeWithRetry(IntConsumer onAttempt, TransactionCallback<T> callback) {
+        for (int attempt = 1; ; attempt++) {
+            onAttempt.accept(attempt);
+            try {
+                return transactionTemplate.execute(callback);
+            } catch (OptimisticLockingFailureException | PessimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    throw new TransferConflictException("Transfer was aborted due to concurrent updates, try again later");
+                }
+                meterRegistry.counter("bank.transfers.retries", "mode", modeTag()).increment();
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void executeTransfer(TransferCommand command, TransferEvent event) {
+        // The key is recorded before the cards are touched, so a concurrent duplicate
+        // blocks on the unique key instead of on the card rows
+        if (command.idempotencyKey() != null) {
+            idempotencyService.record(command.userId(), command.idempotencyKey(), command.fingerprint());
         }
 
-        Card fromCard = fromCardOpt.get();
-        Card toCard = toCardOpt.get();
+        long loadStarted = System.nanoTime();
+        List<Card> cards = loadCards(List.of(command.fromCardHash(), command.toCardHash()));
+        event.addLockWait(System.nanoTime() - loadStarted);
+        Card fromCard = findByCardNumberHash(cards, command.fromCardHash()).orElse(null);
+        Card toCard = findByCardNumberHash(cards, command.toCardHash()).orElse(null);
+        if (fromCard != null && toCard != null) {
+            event.setCards(fromCard.getId(), toCard.getId());
+        }
 
+        SlotChanges slotChanges = new SlotChanges();
+        Transaction transaction = applyTransfer(fromCard, toCard, command.amount(), command.userId(), slotChanges);
+        cardBalanceService.apply(slotChanges);
+        transactionsRepository.save(transaction);
+    }
+
+    private Transaction applyTransfer(Card fromCard, Card toCard, BigDecimal amount, Long userId, SlotChanges slotChanges) {
+        if (fromCard == null || toCard == null) {
+            throw new CardNotFoundException("Card not found");
+        }
         if (!fromCard.getOwner().getId().equals(userId) || !toCard.getOwner().getId().equals(userId)) {
             throw new NoAuthorityException("You do not have permission to transfer with these cards");
         }
-        if (fromCard.getId().equals(toCard.getId()) || fromCard.getCardNumber().equals(toCard.getCardNumber())) {
+        if (fromCard.getId().equals(toCard.getId())) {
             throw new SameCardTransactionException("Transfer from the card to itself is not possible");
         }
 
-        BigDecimal balanceFromCard = fromCard.getBalance();
-        BigDecimal balanceToCard = toCard.getBalance();
-        BigDecimal newBalanceFromCard = balanceFromCard.subtract(request.getAmount());
-        if (newBalanceFromCard.compareTo(BigDecimal.ZERO) < 0) {
-            throw new CardInsufficientFunds("Insufficient funds");
-        }
-
-        fromCard.setBalance(newBalanceFromCard);
-        BigDecimal newBalanceToCard = balanceToCard.add(request.getAmount());
-        toCard.setBalance(newBalanceToCard);
+        cardBalanceService.debit(fromCard, amount, slotChanges);
+        cardBalanceService.credit(toCard, amount, slotChanges);
 
-        Transaction newTransaction = new Transaction(
+        return new Transaction(
                 fromCard.getCardNumber(),
                 toCard.getCardNumber(),
-                request.getAmount(),
+                amount,
                 new Date()
         );
+    }
+
+    private void validateAmount(BigDecimal amount) {
+        if (amount.compareTo(new BigDecimal("0.01")) < 0) {
+            throw new InvalidCurrencyAmount("Amount must be greater than or equal to 0.01");
+        }
+        if (amount.scale() > 2) {
+            throw new InvalidCurrencyAmount("Amount must have at most 2 decimal places");
+        }
+    }
+
+    private List<Card> loadCards(List<String> cardNumberHashes) {
+        if (transferMode == TransferMode.OPTIMISTIC) {
+            return cardsRepository.findAllByCardNumberHashIn(cardNumberHashes);
+        }
+        return lockCards(cardNumberHashes);
+    }
+
+    // Both cards are loaded and locked by one statement in ascending id order,
+    // so concurrent A -> B and B -> A transfers cannot deadlock each other.
+    // Cards with a sharded balance are not returned by it and are share-locked afterwards,
+    // so transfers to the same hot card do not wait for each other on the card row
+    private List<Card> lockCards(Collection<String> cardNumberHashes) {
+        List<Card> cards = new ArrayList<>(cardsRepository.findAllForUpdateByCardNumberHashIn(cardNumberHashes));
+        Set<String> shardedCardHashes = new HashSet<>(cardNumberHashes);
+        cards.forEach(card -> shardedCardHashes.remove(card.getCardNumberHash()));
+        if (!shardedCardHashes.isEmpty()) {
+            List<Card> sharedCards = cardsRepository.findAllForShareByCardNumberHashIn(shardedCardHashes);
+            // The slots of a card may have been set back to 0 between the two statements. Its balance is in the
+            // card row again and must not be written under a shared lock: upgrading the lock would deadlock with
+            // the other transfers sharing it. The transfer is retried, and the new attempt write-locks the card
+            if (sharedCards.stream().anyMatch(card -> card.getBalanceSlots() == 0)) {
+                throw new OptimisticLockingFailureException("Balance slots of the card were changed concurrently");
+            }
+            cards.addAll(sharedCards);
+        }
+        return cards;
+    }
+
+    private Optional<Card> findByCardNumberHash(List<Card> cards, String cardNumberHash) {
+        return cards.stream()
+                .filter(card -> card.getCardNumberHash().equals(cardNumberHash))
+                .findFirst();
+    }
+
+    // Full jitter: sleep for a random time up to an exponentially growing cap,
+    // so that the transfers which collided do not collide again on the next attempt
+    private void backoff(int attempt) {
+        long cap = retryBackoffMillis << Math.min(attempt - 1, 10);
+        if (cap <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferConflictException("Transfer was interrupted while waiting for retry");
+        }
+    }
+
+    private void finishTransfer(TransferEvent event, String outcome) {
+        countTransfer(modeTag(), outcome, 1);
+        event.commit(outcome);
+    }
+
+    private void countTransfer(String mode, String outcome, int count) {
+        meterRegistry.counter("bank.transfers", "mode", mode, "outcome", outcome).increment(count);
+    }
+
+    private String modeTag() {
+        return transferMode.name().toLowerCase(Locale.ROOT);
+    }
 
-        transactionsRepository.save(newTransaction);
+    private record TransferCommand(
+            String fromCardHash,
+            String toCardHash,
+            BigDecimal amount,
+            Long userId,
+            String idempotencyKey,
+            String fingerprint
+    ) {
     }
 
 }
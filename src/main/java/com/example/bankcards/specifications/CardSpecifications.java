@@ -1,7 +1,10 @@
 package com.example.bankcards.specifications;
 
 import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardBalanceSlot;
 import com.example.bankcards.enums.CardStatus;
+import jakarta.persistence.criteria.*;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 
 import java.math.BigDecimal;
@@ -18,14 +21,81 @@ public class CardSpecifications {
                 criteriaBuilder.equal(root.get("status"), status);
     }
 
-    public static Specification<Card> balanceGreaterThan(BigDecimal minBalance) {
+    public static Specification<Card> balanceGreaterThan(BigDecimal minBalance, boolean withSlots) {
         return (root, criteriaQuery, criteriaBuilder) ->
-                criteriaBuilder.greaterThanOrEqualTo(root.get("balance"), minBalance);
+                criteriaBuilder.greaterThanOrEqualTo(balance(root, criteriaQuery, criteriaBuilder, withSlots), minBalance);
     }
 
-    public static Specification<Card> balanceLessThan(BigDecimal maxBalance) {
+    public static Specification<Card> balanceLessThan(BigDecimal maxBalance, boolean withSlots) {
         return (root, criteriaQuery, criteriaBuilder) ->
-                criteriaBuilder.lessThanOrEqualTo(root.get("balance"), maxBalance);
+                criteriaBuilder.lessThanOrEqualTo(balance(root, criteriaQuery, criteriaBuilder, withSlots), maxBalance);
+    }
+
+    // A sharded card keeps card.balance at zero, its balance is the sum of its slots. The sum is read by a
+    // correlated subquery, evaluated only for sharded cards. It cannot be read from the (owner_id, balance, id)
+    // index, so the plain column is compared when the owner has no sharded cards
+    public static Expression<BigDecimal> balance(
+            Root<Card> root,
+            AbstractQuery<?> query,
+            CriteriaBuilder criteriaBuilder,
+            boolean withSlots
+    ) {
+        if (!withSlots) {
+            return root.get("balance");
+        }
+        Subquery<BigDecimal> slots = query.subquery(BigDecimal.class);
+        Root<CardBalanceSlot> slot = slots.from(CardBalanceSlot.class);
+        slots.select(criteriaBuilder.coalesce(criteriaBuilder.sum(slot.get("balance")), BigDecimal.ZERO))
+                .where(criteriaBuilder.equal(slot.get("cardId"), root.get("id")));
+        return criteriaBuilder.<BigDecimal>selectCase()
+                .when(criteriaBuilder.equal(root.get("balanceSlots"), 0), root.<BigDecimal>get("balance"))
+                .otherwise(slots);
+    }
+
+    // Rows that come after (value, id) in the order "property direction, id direction". The leading
+    // "property >= value" (or "<=") is implied by the OR, but only a plain comparison can bound the range
+    // scan of the (owner_id, property, id) index, so a deep page starts at the cursor instead of reading
+    // every row before it. The criteria API has no row value comparison "(property, id) > (value, id)"
+    public static <T extends Comparable<? super T>> Specification<Card> after(
+            String property,
+            Sort.Direction direction,
+            T value,
+            Long id
+    ) {
+        return (root, criteriaQuery, criteriaBuilder) ->
+                after(root.get(property), root.get("id"), direction, value, id, criteriaBuilder);
+    }
+
+    // The same seek on the balance including the slots of sharded cards, which no index can bound
+    public static Specification<Card> balanceAfter(Sort.Direction direction, BigDecimal value, Long id) {
+        return (root, criteriaQuery, criteriaBuilder) ->
+                after(balance(root, criteriaQuery, criteriaBuilder, true), root.get("id"), direction, value, id, criteriaBuilder);
+    }
+
+    private static <T extends Comparable<? super T>> Predicate after(
+            Expression<T> key,
+            Path<Long> idPath,
+            Sort.Direction direction,
+            T value,
+            Long id,
+            CriteriaBuilder criteriaBuilder
+    ) {
+        if (direction.isAscending()) {
+            return criteriaBuilder.and(
+                    criteriaBuilder.greaterThanOrEqualTo(key, value),
+                    criteriaBuilder.or(
+                            criteriaBuilder.greaterThan(key, value),
+                            criteriaBuilder.and(criteriaBuilder.equal(key, value), criteriaBuilder.greaterThan(idPath, id))
+                    )
+            );
+        }
+        return criteriaBuilder.and(
+                criteriaBuilder.lessThanOrEqualTo(key, value),
+                criteriaBuilder.or(
+                        criteriaBuilder.lessThan(key, value),
+                        criteriaBuilder.and(criteriaBuilder.equal(key, value), criteriaBuilder.lessThan(idPath, id))
+                )
+        );
     }
 
 }
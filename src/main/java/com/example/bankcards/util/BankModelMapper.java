@@ -2,33 +2,51 @@ package com.example.bankcards.util;
 
 import com.example.bankcards.dto.AuthRequest;
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.TransactionResponse;
 import com.example.bankcards.dto.UserResponse;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.User;
-import org.modelmapper.ModelMapper;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.stereotype.Component;
-
-@Component
-public class BankModelMapper {
-
-    private final ModelMapper modelMapper;
-
-    @Autowired
-    public BankModelMapper(ModelMapper modelMapper) {
-        this.modelMapper = modelMapper;
-    }
-
-    public User convertToUser(AuthRequest dto) {
-        return modelMapper.map(dto, User.class);
-    }
-
-    public UserResponse convertToUserResponse(User user) {
-        return modelMapper.map(user, UserResponse.class);
-    }
-
-    public CardResponse convertToCardResponse(Card card) {
-        return modelMapper.map(card, CardResponse.class);
+import com.example.bankcards.projections.CardSummary;
+import com.example.bankcards.projections.TransactionSummary;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingConstants;
+
+import java.sql.Timestamp;
+import java.util.Date;
+
+// Mapping code is generated at compile time by MapStruct (BankModelMapperImpl),
+// so a conversion is a sequence of plain getter and setter calls without reflection
+@Mapper(componentModel = MappingConstants.ComponentModel.SPRING)
+public abstract class BankModelMapper {
+
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "role", ignore = true)
+    @Mapping(target = "cards", ignore = true)
+    public abstract User convertToUser(AuthRequest dto);
+
+    public abstract UserResponse convertToUserResponse(User user);
+
+    // The masked card number is filled in by the caller
+    @Mapping(target = "ownerId", source = "owner.id")
+    @Mapping(target = "cardNumber", ignore = true)
+    public abstract CardResponse convertToCardResponse(Card card);
+
+    // The masked card number and the balance are filled in by the caller
+    @Mapping(target = "cardNumber", ignore = true)
+    @Mapping(target = "balance", ignore = true)
+    public abstract CardResponse convertToCardResponse(CardSummary card);
+
+    // The masked counterpart card number is filled in by the caller
+    @Mapping(target = "counterpartCardNumber", ignore = true)
+    public abstract TransactionResponse convertToTransactionResponse(TransactionSummary transaction);
+
+    // Dates are rendered in the java.sql.Timestamp format, e.g. 2029-09-11 15:05:03.693
+    protected String formatDate(Date date) {
+        if (date == null) {
+            return null;
+        }
+        return date instanceof Timestamp ? date.toString() : new Timestamp(date.getTime()).toString();
     }
 
 }
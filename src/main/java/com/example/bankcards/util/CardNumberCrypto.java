@@ -1,48 +1,152 @@
 package com.example.bankcards.util;
 
+import com.example.bankcards.jfr.CardNumberCryptoEvent;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
 import java.util.Base64;
+import java.util.HexFormat;
 
 @Component
 public class CardNumberCrypto {
 
+    // Card numbers encrypted with AES/GCM are stored with this prefix,
+    // values without it were encrypted with the former deterministic AES/ECB
+    private static final String GCM_PREFIX = "v2:";
+    private static final int GCM_IV_LENGTH = 12;
+    private static final int GCM_TAG_LENGTH = 128;
+    private static final int MAX_IDLE_INSTANCES = 64;
+
     private final SecretKeySpec secretKey;
+    private final SecretKeySpec hashKey;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    // Cipher.getInstance and Mac.getInstance do a provider lookup on every call, so instances are reused.
+    // A GCM cipher is initialized again for every IV, ECB ciphers and Macs are initialized once
+    // with the key and reset by doFinal
+    private final ObjectPool<Cipher> gcmCiphers;
+    private final ObjectPool<Cipher> legacyDecryptCiphers;
+    private final ObjectPool<Mac> macs;
 
     @Autowired
     public CardNumberCrypto(
-            @Value("${spring.card-number.encryption.secret}") String secret
+            @Value("${spring.card-number.encryption.secret}") String secret,
+            @Value("${spring.card-number.hash.secret}") String hashSecret
     ) {
         this.secretKey = new SecretKeySpec(secret.getBytes(), "AES");
+        this.hashKey = new SecretKeySpec(hashSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        this.gcmCiphers = new ObjectPool<>(() -> createCipher("AES/GCM/NoPadding"), MAX_IDLE_INSTANCES);
+        this.legacyDecryptCiphers = new ObjectPool<>(this::createLegacyDecryptCipher, MAX_IDLE_INSTANCES);
+        this.macs = new ObjectPool<>(this::createMac, MAX_IDLE_INSTANCES);
     }
 
+    @Timed(value = "bank.card-number.crypto", extraTags = {"operation", "encrypt"}, histogram = true)
     public String encrypt(String strToEncrypt) {
+        CardNumberCryptoEvent event = new CardNumberCryptoEvent();
+        event.begin();
         try {
-            Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-            return Base64.getEncoder().encodeToString(cipher.doFinal(strToEncrypt.getBytes()));
+            byte[] iv = new byte[GCM_IV_LENGTH];
+            secureRandom.nextBytes(iv);
+            Cipher cipher = gcmCiphers.borrow();
+            cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+            byte[] encrypted = cipher.doFinal(strToEncrypt.getBytes());
+            gcmCiphers.release(cipher);
+            byte[] result = ByteBuffer.allocate(iv.length + encrypted.length).put(iv).put(encrypted).array();
+            event.commit("encrypt", false, "success");
+            return GCM_PREFIX + Base64.getEncoder().encodeToString(result);
         } catch (Exception e) {
+            event.commit("encrypt", false, "error");
             throw new RuntimeException("Encryption error", e);
         }
     }
 
+    @Timed(value = "bank.card-number.crypto", extraTags = {"operation", "decrypt"}, histogram = true)
     public String decrypt(String strToDecrypt) {
+        CardNumberCryptoEvent event = new CardNumberCryptoEvent();
+        event.begin();
+        boolean legacy = !strToDecrypt.startsWith(GCM_PREFIX);
         try {
-            Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
-            cipher.init(Cipher.DECRYPT_MODE, secretKey);
-            return new String(cipher.doFinal(Base64.getDecoder().decode(strToDecrypt)));
+            if (legacy) {
+                Cipher cipher = legacyDecryptCiphers.borrow();
+                String decrypted = new String(cipher.doFinal(Base64.getDecoder().decode(strToDecrypt)));
+                legacyDecryptCiphers.release(cipher);
+                event.commit("decrypt", true, "success");
+                return decrypted;
+            }
+            byte[] decoded = Base64.getDecoder().decode(strToDecrypt.substring(GCM_PREFIX.length()));
+            Cipher cipher = gcmCiphers.borrow();
+            cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(GCM_TAG_LENGTH, decoded, 0, GCM_IV_LENGTH));
+            String decrypted = new String(cipher.doFinal(decoded, GCM_IV_LENGTH, decoded.length - GCM_IV_LENGTH));
+            gcmCiphers.release(cipher);
+            event.commit("decrypt", false, "success");
+            return decrypted;
         } catch (Exception e) {
+            event.commit("decrypt", legacy, "error");
             throw new RuntimeException("Decryption error", e);
         }
     }
 
+    // Blind index of the card number: cards are looked up by this keyed hash,
+    // so the stored ciphertext does not have to be deterministic
+    public String hash(String cardNumber) {
+        CardNumberCryptoEvent event = new CardNumberCryptoEvent();
+        event.begin();
+        Mac mac = macs.borrow();
+        String hash = HexFormat.of().formatHex(mac.doFinal(cardNumber.getBytes(StandardCharsets.UTF_8)));
+        macs.release(mac);
+        event.commit("hash", false, "success");
+        return hash;
+    }
+
     public String transformToMaskedNumber(String cardNumber) {
-        String lastFourDigits = cardNumber.substring(12);
+        return maskLastFour(lastFour(cardNumber));
+    }
+
+    // Builds the masked number from the stored last four digits, without decrypting the card number
+    public String maskLastFour(String lastFourDigits) {
         return "**** **** **** " + lastFourDigits;
     }
 
+    public static String lastFour(String cardNumber) {
+        return cardNumber.substring(12);
+    }
+
+    private Cipher createCipher(String transformation) {
+        try {
+            return Cipher.getInstance(transformation);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cipher " + transformation + " is not available", e);
+        }
+    }
+
+    private Cipher createLegacyDecryptCipher() {
+        Cipher cipher = createCipher("AES/ECB/PKCS5Padding");
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, secretKey);
+            return cipher;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Invalid card number encryption key", e);
+        }
+    }
+
+    private Mac createMac() {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(hashKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
 }
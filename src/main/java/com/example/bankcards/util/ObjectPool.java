@@ -0,0 +1,41 @@
+package com.example.bankcards.util;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Lock-free pool of reusable objects that are not thread-safe, such as Cipher and Mac.
+// Unlike a ThreadLocal it does not keep an instance per thread, which matters with virtual
+// threads: the number of instances follows the number of concurrent calls, and at most
+// maxIdle of them are kept between calls
+public class ObjectPool<T> {
+
+    private final ConcurrentLinkedQueue<T> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final Supplier<T> factory;
+    private final int maxIdle;
+
+    public ObjectPool(Supplier<T> factory, int maxIdle) {
+        this.factory = factory;
+        this.maxIdle = maxIdle;
+    }
+
+    public T borrow() {
+        T object = idle.poll();
+        if (object == null) {
+            return factory.get();
+        }
+        idleCount.decrementAndGet();
+        return object;
+    }
+
+    // Only objects in a clean state may be returned, an object that failed mid-operation is dropped instead
+    public void release(T object) {
+        if (idleCount.incrementAndGet() <= maxIdle) {
+            idle.offer(object);
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+
+}
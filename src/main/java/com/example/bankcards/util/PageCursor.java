@@ -0,0 +1,32 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.exception.InvalidCursorException;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Opaque continuation token of keyset pagination: the sort property and direction of the listing,
+// and the sort key and id of the last returned row. The next page starts right after that row
+public record PageCursor(String property, Sort.Direction direction, String value, long id) {
+
+    public String encode() {
+        String raw = property + ":" + direction.name() + ":" + id + ":" + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PageCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            // The value goes last, so it may contain the separator itself
+            String[] parts = raw.split(":", 4);
+            if (parts.length != 4) {
+                throw new InvalidCursorException("Invalid cursor");
+            }
+            return new PageCursor(parts[0], Sort.Direction.valueOf(parts[1]), parts[3], Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Invalid cursor");
+        }
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.example.bankcards.util;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Maximum number of SQL statements a request to the annotated endpoint is expected to run.
+ * Requests over the budget are counted in bank.http.server.query-budget.exceeded and fail
+ * when spring.queries.budget.strict is set. Strict mode is meant for tests, which use it to catch N+1 loads.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface QueryBudget {
+
+    int value();
+}
@@ -0,0 +1,48 @@
+package com.example.bankcards.util;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread between {@link #start()} and
+ * {@link #stop()}, so every HTTP request knows how many queries it ran, including the ones
+ * hidden behind lazy associations. Statements outside a counted scope are not counted.
+ * Statements that bypass Hibernate, such as JdbcTemplate batches, are not seen by the inspector and
+ * are counted with {@link #count()} by the code that runs them.
+ */
+public class QueryCounter implements StatementInspector {
+
+    private static final ThreadLocal<int[]> COUNT = new ThreadLocal<>();
+
+    public static void start() {
+        COUNT.set(new int[1]);
+    }
+
+    // Returns the number of statements since start
+    public static int stop() {
+        int[] count = COUNT.get();
+        COUNT.remove();
+        return count == null ? 0 : count[0];
+    }
+
+    // Counts one statement, or one JDBC batch, that did not go through Hibernate
+    public static void count() {
+        int[] count = COUNT.get();
+        if (count != null) {
+            count[0]++;
+        }
+    }
+
+    public static int current() {
+        int[] count = COUNT.get();
+        return count == null ? 0 : count[0];
+    }
+
+    @Override
+    public String inspect(String sql) {
+        int[] count = COUNT.get();
+        if (count != null) {
+            count[0]++;
+        }
+        return sql;
+    }
+}
@@ -0,0 +1 @@
+alter table card add column version bigint not null default 0;
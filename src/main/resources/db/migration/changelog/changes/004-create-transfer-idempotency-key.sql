@@ -0,0 +1,11 @@
+create table transfer_idempotency_key(
+    id bigint primary key generated by default as identity,
+    user_id bigint not null,
+    idempotency_key varchar(64) not null,
+    request_hash char(64) not null,
+    created_at timestamp not null,
+    constraint fk_transfer_idempotency_key_user foreign key (user_id) references user_profile(id) on delete cascade,
+    constraint unique_user_idempotency_key unique (user_id, idempotency_key)
+);
+
+create index idx_transfer_idempotency_key_created_at on transfer_idempotency_key(created_at);
@@ -0,0 +1,13 @@
+alter table card add column balance_slots int not null default 0 check (balance_slots >= 0);
+
+create table card_balance_slot(
+    id bigint primary key generated by default as identity,
+    card_id bigint not null,
+    slot int not null,
+    balance numeric(19, 2) not null default 0.00 check (balance >= 0),
+    constraint fk_card_balance_slot_card foreign key (card_id) references card(id) on delete cascade,
+    constraint unique_card_balance_slot unique (card_id, slot)
+);
+
+-- Card listings check whether an owner has sharded cards before they filter or sort by balance
+create index idx_card_owner_sharded on card(owner_id) where balance_slots > 0;
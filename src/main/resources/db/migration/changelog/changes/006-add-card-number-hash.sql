@@ -0,0 +1,12 @@
+-- AES/GCM ciphertexts with their IV are longer than the former AES/ECB ones
+alter table card alter column card_number type varchar(128);
+alter table transaction alter column from_card_number type varchar(128);
+alter table transaction alter column to_card_number type varchar(128);
+
+-- Randomized ciphertexts are unique anyway, lookups and uniqueness go through the hash
+alter table card drop constraint card_card_number_key;
+
+-- Existing rows are backfilled at startup by CardNumberBackfill:
+-- the HMAC key is part of the application configuration and is not available here
+alter table card add column card_number_hash char(64);
+create unique index idx_card_card_number_hash on card(card_number_hash);
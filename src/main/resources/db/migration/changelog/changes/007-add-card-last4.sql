@@ -0,0 +1,3 @@
+-- Existing rows are backfilled at startup by CardNumberBackfill,
+-- the last digits can only be taken from the decrypted card number
+alter table card add column card_last4 char(4);
@@ -0,0 +1,8 @@
+-- Keyset pagination of a user's cards seeks by (sort key, id) within the owner
+create index idx_card_owner_id_id on card(owner_id, id);
+create index idx_card_owner_balance_id on card(owner_id, balance, id);
+create index idx_card_owner_expiry_date_id on card(owner_id, expiry_date, id);
+create index idx_card_owner_status_id on card(owner_id, status, id);
+
+-- Covered by (owner_id, id), which also serves the lookups and counts by owner
+drop index idx_card_owner_id;
@@ -0,0 +1,11 @@
+-- Refresh tokens are stored as their SHA-256 digest instead of the bearer JWT itself.
+-- Existing tokens are hashed in place, so users stay logged in
+alter table refresh_token add column refresh_token_hash bytea;
+update refresh_token set refresh_token_hash = sha256(convert_to(refresh_token, 'UTF8'));
+alter table refresh_token alter column refresh_token_hash set not null;
+
+-- The 32-byte digest replaces both indexes on the token text
+alter table refresh_token drop constraint unique_user_token;
+drop index idx_refresh_token_token;
+alter table refresh_token drop column refresh_token;
+create unique index idx_refresh_token_hash on refresh_token(refresh_token_hash);
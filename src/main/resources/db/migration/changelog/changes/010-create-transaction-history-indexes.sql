@@ -0,0 +1,7 @@
+-- A card statement seeks by (card, executed_at, id) on the side of the transfer the card was on
+create index idx_transaction_from_card_executed_at_id on transaction(from_card_number, executed_at, id);
+create index idx_transaction_to_card_executed_at_id on transaction(to_card_number, executed_at, id);
+
+-- The statement joins the counterpart card by the encrypted number stored in the transaction.
+-- The unique constraint on card_number was dropped in 006, so the join needs its own index
+create index idx_card_card_number on card(card_number);
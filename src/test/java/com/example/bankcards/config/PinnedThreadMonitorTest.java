@@ -0,0 +1,66 @@
+package com.example.bankcards.config;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PinnedThreadMonitorTest {
+
+    private final Object monitor = new Object();
+    private SimpleMeterRegistry meterRegistry;
+    private PinnedThreadMonitor pinnedThreadMonitor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        pinnedThreadMonitor = new PinnedThreadMonitor(meterRegistry, 10);
+        pinnedThreadMonitor.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pinnedThreadMonitor.stop();
+    }
+
+    @Test
+    void sleepInsideSynchronized_isReportedWithBlockingFrame() throws Exception {
+        String frame = PinnedThreadMonitorTest.class.getName() + ".sleep";
+
+        long deadline = System.currentTimeMillis() + 20_000;
+        Timer pinned = null;
+        while (pinned == null && System.currentTimeMillis() < deadline) {
+            Thread.ofVirtual().start(this::sleepHoldingMonitor).join();
+            Thread.sleep(500);
+            pinned = meterRegistry.find("bank.virtual-threads.pinned").tag("frame", frame).timer();
+        }
+
+        assertNotNull(pinned);
+        assertTrue(pinned.count() >= 1);
+    }
+
+    @Test
+    void sleepOutsideSynchronized_isNotReported() throws Exception {
+        Thread.ofVirtual().start(this::sleep).join();
+        Thread.sleep(2000);
+
+        assertNull(meterRegistry.find("bank.virtual-threads.pinned").timer());
+    }
+
+    private void sleepHoldingMonitor() {
+        synchronized (monitor) {
+            sleep();
+        }
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(50);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.util.QueryBudget;
+import com.example.bankcards.util.QueryCounter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryCountFilterTest {
+
+    private final QueryCounter queryCounter = new QueryCounter();
+    private SimpleMeterRegistry meterRegistry;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        meterRegistry = new SimpleMeterRegistry();
+        request = new MockHttpServletRequest("GET", "/cards/1");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/cards/{id}");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE,
+                new HandlerMethod(this, QueryCountFilterTest.class.getDeclaredMethod("budgetOfTwo")));
+        response = new MockHttpServletResponse();
+    }
+
+    @Test
+    void doFilter_countsStatementsOfRequest() throws Exception {
+        filter(false).doFilter(request, response, runningStatements(2));
+
+        assertEquals("2", response.getHeader(QueryCountFilter.QUERY_COUNT_HEADER));
+        assertEquals(2, meterRegistry.get("bank.http.server.queries").tag("uri", "/cards/{id}").summary().totalAmount());
+        assertNull(meterRegistry.find("bank.http.server.query-budget.exceeded").counter());
+    }
+
+    @Test
+    void doFilter_headerHasCountWhenBodyIsWritten() throws Exception {
+        filter(false).doFilter(request, response, (req, res) -> {
+            queryCounter.inspect("select 1");
+            res.getWriter().write("{}");
+            res.flushBuffer();
+            queryCounter.inspect("select 2");
+        });
+
+        assertEquals("1", response.getHeader(QueryCountFilter.QUERY_COUNT_HEADER));
+        assertEquals(2, meterRegistry.get("bank.http.server.queries").summary().totalAmount());
+    }
+
+    @Test
+    void doFilter_overBudgetIsCounted() throws Exception {
+        filter(false).doFilter(request, response, runningStatements(3));
+
+        assertEquals(1, meterRegistry.get("bank.http.server.query-budget.exceeded").counter().count());
+    }
+
+    @Test
+    void doFilter_overBudgetFailsInStrictMode() {
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> filter(true).doFilter(request, response, runningStatements(3)));
+
+        assertTrue(e.getMessage().contains("GET /cards/{id} ran 3 SQL statements"));
+    }
+
+    @Test
+    void doFilter_countsStatementsBypassingHibernate() throws Exception {
+        filter(false).doFilter(request, response, (req, res) -> {
+            queryCounter.inspect("select 1");
+            QueryCounter.count();
+        });
+
+        assertEquals("2", response.getHeader(QueryCountFilter.QUERY_COUNT_HEADER));
+    }
+
+    @Test
+    void inspect_outsideRequestIsNotCounted() {
+        queryCounter.inspect("select 1");
+
+        assertEquals(0, QueryCounter.current());
+    }
+
+    private QueryCountFilter filter(boolean strict) {
+        return new QueryCountFilter(meterRegistry, strict);
+    }
+
+    private FilterChain runningStatements(int statements) {
+        return (req, res) -> {
+            for (int i = 0; i < statements; i++) {
+                queryCounter.inspect("select " + i);
+            }
+        };
+    }
+
+    @QueryBudget(2)
+    void budgetOfTwo() {
+    }
+}
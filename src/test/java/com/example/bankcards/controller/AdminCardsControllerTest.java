@@ -1,8 +1,10 @@
 package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.ChangeBalanceSlotsRequest;
 import com.example.bankcards.dto.ChangeCardStatusRequest;
 import com.example.bankcards.enums.CardStatus;
+import com.example.bankcards.security.VerifiedTokenCache;
 import com.example.bankcards.service.AdminCardsService;
 import com.example.bankcards.service.TokenService;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -12,6 +14,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
 import org.springframework.boot.autoconfigure.security.servlet.SecurityFilterAutoConfiguration;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
@@ -23,6 +26,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 @WebMvcTest(controllers = AdminCardsController.class,
         excludeAutoConfiguration = {SecurityAutoConfiguration.class, SecurityFilterAutoConfiguration.class})
+@Import(MetricsTestConfig.class)
 class AdminCardsControllerTest {
 
     @Autowired
@@ -31,6 +35,9 @@ class AdminCardsControllerTest {
     @MockitoBean
     TokenService tokenService;
 
+    @MockitoBean
+    VerifiedTokenCache verifiedTokenCache;
+
     @MockitoBean
     private AdminCardsService adminCardsService;
 
@@ -86,6 +93,32 @@ class AdminCardsControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void changeBalanceSlots_success() throws Exception {
+        ChangeBalanceSlotsRequest request = new ChangeBalanceSlotsRequest();
+        request.setSlots(8);
+
+        mockMvc.perform(patch("/admin/cards/1/balance-slots")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk());
+
+        Mockito.verify(adminCardsService).setBalanceSlots(1L, 8);
+    }
+
+    @Test
+    void changeBalanceSlots_tooManySlots() throws Exception {
+        ChangeBalanceSlotsRequest request = new ChangeBalanceSlotsRequest();
+        request.setSlots(65);
+
+        mockMvc.perform(patch("/admin/cards/1/balance-slots")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+
+        Mockito.verify(adminCardsService, Mockito.never()).setBalanceSlots(Mockito.anyLong(), Mockito.anyInt());
+    }
+
     @Test
     void deleteCard_success() throws Exception {
         mockMvc.perform(delete("/admin/cards/1"))
@@ -5,6 +5,7 @@ import com.example.bankcards.dto.ChangeUsernameRequest;
 import com.example.bankcards.dto.PageResponse;
 import com.example.bankcards.dto.UserResponse;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.security.VerifiedTokenCache;
 import com.example.bankcards.service.AdminCardsService;
 import com.example.bankcards.service.AdminUsersService;
 import com.example.bankcards.service.CardsService;
@@ -18,6 +19,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
 import org.springframework.boot.autoconfigure.security.servlet.SecurityFilterAutoConfiguration;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
@@ -30,6 +32,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 @WebMvcTest(controllers = AdminUsersController.class,
         excludeAutoConfiguration = {SecurityAutoConfiguration.class, SecurityFilterAutoConfiguration.class})
+@Import(MetricsTestConfig.class)
 class AdminUsersControllerTest {
 
     @Autowired
@@ -41,6 +44,9 @@ class AdminUsersControllerTest {
     @MockitoBean
     TokenService tokenService;
 
+    @MockitoBean
+    VerifiedTokenCache verifiedTokenCache;
+
     @MockitoBean
     private AdminUsersService adminUsersService;
 
@@ -101,7 +107,7 @@ class AdminUsersControllerTest {
                 Collections.singletonList(cardResponse), 0, 10, 1, 1
         );
 
-        Mockito.when(cardsService.getUserCards(anyLong(), anyInt(), anyInt(), any(), any(), any(), any()))
+        Mockito.when(cardsService.getUserCards(anyLong(), anyInt(), anyInt(), any(), any(), any(), any(), any(), anyBoolean()))
                 .thenReturn(pageResponse);
 
         mockMvc.perform(get("/admin/users/1/cards"))
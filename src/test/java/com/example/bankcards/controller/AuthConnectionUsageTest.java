@@ -0,0 +1,79 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.repository.RefreshTokensRepository;
+import com.example.bankcards.repository.UsersRepository;
+import com.example.bankcards.service.PasswordHashingService;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Registration and login hash passwords with BCrypt, which takes tens of milliseconds and may wait in the
+ * hashing queue. A burst of logins must not drain the connection pool, so no connection may be held
+ * while a password is hashed or checked.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles({"development", "h2"})
+class AuthConnectionUsageTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private HikariDataSource dataSource;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @Autowired
+    private RefreshTokensRepository refreshTokensRepository;
+
+    @MockitoSpyBean
+    private PasswordHashingService passwordHashingService;
+
+    @AfterEach
+    void tearDown() {
+        refreshTokensRepository.deleteAll();
+        usersRepository.deleteAll();
+    }
+
+    @Test
+    void registerAndLogin_holdNoConnectionWhileHashing() throws Exception {
+        List<Integer> activeConnections = new ArrayList<>();
+        doAnswer(invocation -> {
+            activeConnections.add(dataSource.getHikariPoolMXBean().getActiveConnections());
+            return invocation.callRealMethod();
+        }).when(passwordHashingService).encode(any());
+        doAnswer(invocation -> {
+            activeConnections.add(dataSource.getHikariPoolMXBean().getActiveConnections());
+            return invocation.callRealMethod();
+        }).when(passwordHashingService).matches(any(), any());
+
+        String body = "{\"username\": \"pool_user\", \"password\": \"password\"}";
+        mockMvc.perform(post("/auth/register").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/auth/login").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk());
+
+        assertFalse(activeConnections.isEmpty());
+        activeConnections.forEach(active -> assertEquals(0, active));
+    }
+}
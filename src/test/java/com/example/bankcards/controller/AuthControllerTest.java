@@ -2,6 +2,8 @@ package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.AuthRequest;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.PasswordHashingBusyException;
+import com.example.bankcards.security.VerifiedTokenCache;
 import com.example.bankcards.service.AuthService;
 import com.example.bankcards.service.TokenService;
 import com.example.bankcards.service.AdminUsersService;
@@ -12,16 +14,19 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
 import org.springframework.boot.autoconfigure.security.servlet.SecurityFilterAutoConfiguration;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(controllers = AuthController.class,
         excludeAutoConfiguration = {SecurityAutoConfiguration.class, SecurityFilterAutoConfiguration.class})
+@Import(MetricsTestConfig.class)
 class AuthControllerTest {
 
     @Autowired
@@ -39,6 +44,9 @@ class AuthControllerTest {
     @MockitoBean
     private TokenService tokenService;
 
+    @MockitoBean
+    private VerifiedTokenCache verifiedTokenCache;
+
     @MockitoBean
     private AdminUsersService adminUsersService;
 
@@ -86,4 +94,24 @@ class AuthControllerTest {
         verify(tokenService, times(1)).generateRefreshToken(user);
         verify(authService, times(1)).updateRefreshToken(user.getId(), "refresh-token");
     }
+
+    @Test
+    void login_hashingBusy_returnsTooManyRequests() throws Exception {
+        String jsonRequest = "{\"username\":\"existing_user\",\"password\":\"password\"}";
+
+        User user = new User();
+        user.setUsername("existing_user");
+        user.setPassword("password");
+
+        when(bankModelMapper.convertToUser(any(AuthRequest.class))).thenReturn(user);
+        when(authService.checkAndGet(user)).thenThrow(new PasswordHashingBusyException("Too many authentication requests, try again later"));
+
+        mockMvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(jsonRequest))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"));
+
+        verify(tokenService, never()).generateAccessToken(any());
+    }
 }
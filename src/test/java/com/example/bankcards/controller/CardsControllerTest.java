@@ -4,12 +4,14 @@ import com.example.bankcards.dto.CardNumberResponse;
 import com.example.bankcards.dto.CardResponse;
 import com.example.bankcards.dto.PageResponse;
 import com.example.bankcards.security.UserPrincipal;
+import com.example.bankcards.security.VerifiedTokenCache;
 import com.example.bankcards.service.CardsService;
 import com.example.bankcards.service.TokenService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
@@ -26,6 +28,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(controllers = CardsController.class)
+@Import(MetricsTestConfig.class)
 class CardsControllerTest {
 
     @Autowired
@@ -37,6 +40,9 @@ class CardsControllerTest {
     @MockitoBean
     TokenService tokenService;
 
+    @MockitoBean
+    VerifiedTokenCache verifiedTokenCache;
+
     private UserPrincipal user;
 
     @BeforeEach
@@ -113,7 +119,7 @@ class CardsControllerTest {
                 1
         );
 
-        when(cardsService.getUserCards(user.getUserId(), 0, 10, new String[]{"balance:desc"}, null, null, null))
+        when(cardsService.getUserCards(user.getUserId(), 0, 10, new String[]{"balance:desc"}, null, null, null, null, true))
                 .thenReturn(pageResponse);
 
         mockMvc.perform(get("/cards/cards")
@@ -129,4 +135,27 @@ class CardsControllerTest {
                 .andExpect(jsonPath("$.totalElements").value(1))
                 .andExpect(jsonPath("$.totalPages").value(1));
     }
+
+    @Test
+    void getCards_cursorPagination() throws Exception {
+        CardResponse cardResponse = new CardResponse();
+        cardResponse.setId(1L);
+
+        PageResponse<CardResponse> pageResponse = new PageResponse<>(List.of(cardResponse), 1, "next-cursor");
+
+        when(cardsService.getUserCards(user.getUserId(), 0, 1, new String[]{"balance:desc"}, null, null, null, "", true))
+                .thenReturn(pageResponse);
+
+        mockMvc.perform(get("/cards/cards")
+                        .param("limit", "1")
+                        .param("cursor", "")
+                        .with(SecurityMockMvcRequestPostProcessors.authentication(
+                                new UsernamePasswordAuthenticationToken(user, null, null)
+                        )))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(1))
+                .andExpect(jsonPath("$.nextCursor").value("next-cursor"))
+                .andExpect(jsonPath("$.page").doesNotExist())
+                .andExpect(jsonPath("$.totalElements").doesNotExist());
+    }
 }
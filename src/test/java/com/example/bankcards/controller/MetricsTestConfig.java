@@ -0,0 +1,17 @@
+package com.example.bankcards.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+// Web slice tests start without the metrics auto-configuration, which provides the registry
+// the exception handler and the query count filter record to in the application
+@TestConfiguration
+class MetricsTestConfig {
+
+    @Bean
+    MeterRegistry meterRegistry() {
+        return new SimpleMeterRegistry();
+    }
+}
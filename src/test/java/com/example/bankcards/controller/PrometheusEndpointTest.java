@@ -0,0 +1,131 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.enums.CardStatus;
+import com.example.bankcards.enums.Role;
+import com.example.bankcards.repository.CardsRepository;
+import com.example.bankcards.repository.TransactionsRepository;
+import com.example.bankcards.repository.UsersRepository;
+import com.example.bankcards.service.TokenService;
+import com.example.bankcards.util.CardNumberCrypto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalManagementPort;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "management.server.port=0"
+)
+@AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
+@ActiveProfiles({"development", "h2"})
+class PrometheusEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @Autowired
+    private CardsRepository cardsRepository;
+
+    @Autowired
+    private TransactionsRepository transactionsRepository;
+
+    @Autowired
+    private CardNumberCrypto cardNumberCrypto;
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @LocalServerPort
+    private int serverPort;
+
+    @LocalManagementPort
+    private int managementPort;
+
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        User user = usersRepository.save(new User("metrics_user", "password", Role.USER));
+        token = tokenService.generateAccessToken(user);
+        for (String cardNumber : new String[]{"4200000000000001", "4200000000000002"}) {
+            cardsRepository.save(new Card(
+                    cardNumberCrypto.encrypt(cardNumber),
+                    cardNumberCrypto.hash(cardNumber),
+                    CardNumberCrypto.lastFour(cardNumber),
+                    user,
+                    new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(365)),
+                    CardStatus.ACTIVE,
+                    new BigDecimal("100.00")
+            ));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionsRepository.deleteAll();
+        cardsRepository.deleteAll();
+        usersRepository.deleteAll();
+    }
+
+    @Test
+    void prometheus_exposesServiceTimersAndExceptionCounters() throws Exception {
+        mockMvc.perform(patch("/transactions/transfers")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"fromCard\": \"4200000000000001\", \"toCard\": \"4200000000000002\", \"amount\": 10.00}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/cards/cards").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/cards/0").header("Authorization", "Bearer " + token))
+                .andExpect(status().isNotFound());
+
+        ResponseEntity<String> response = restTemplate.getForEntity(
+                "http://localhost:" + managementPort + "/actuator/prometheus", String.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        String metrics = response.getBody();
+        assertNotNull(metrics);
+        assertTrue(metrics.contains("bank_transfer_seconds_bucket"));
+        assertTrue(metrics.contains("bank_cards_list_seconds_bucket"));
+        assertTrue(metrics.contains("bank_card_number_crypto_seconds_count{application=\"bank-rest\",class="));
+        assertTrue(metrics.contains("operation=\"encrypt\""));
+        assertTrue(metrics.contains("bank_exceptions_total{application=\"bank-rest\",exception=\"CardNotFoundException\"}"));
+    }
+
+    @Test
+    void prometheus_notServedOnApplicationPort() {
+        ResponseEntity<String> response = restTemplate.getForEntity(
+                "http://localhost:" + serverPort + "/actuator/prometheus", String.class);
+
+        assertTrue(response.getStatusCode().is4xxClientError());
+        assertFalse(response.getBody() != null && response.getBody().contains("bank_transfer_seconds"));
+    }
+}
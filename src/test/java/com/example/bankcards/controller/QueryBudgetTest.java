@@ -0,0 +1,187 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.config.QueryCountFilter;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.enums.CardStatus;
+import com.example.bankcards.enums.Role;
+import com.example.bankcards.repository.CardBalanceSlotsRepository;
+import com.example.bankcards.repository.CardsRepository;
+import com.example.bankcards.repository.TransactionsRepository;
+import com.example.bankcards.repository.TransferIdempotencyKeysRepository;
+import com.example.bankcards.repository.UsersRepository;
+import com.example.bankcards.service.TokenService;
+import com.example.bankcards.util.CardNumberCrypto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs the endpoints against the in-memory database in strict query budget mode, so an endpoint that
+ * runs more SQL statements than its {@link com.example.bankcards.util.QueryBudget}, for example because
+ * of a lazy association loaded per card, fails here.
+ */
+@SpringBootTest(properties = "spring.queries.budget.strict=true")
+@AutoConfigureMockMvc
+@ActiveProfiles({"development", "h2"})
+class QueryBudgetTest {
+
+    private static final int CARDS = 5;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @Autowired
+    private CardsRepository cardsRepository;
+
+    @Autowired
+    private TransactionsRepository transactionsRepository;
+
+    @Autowired
+    private CardBalanceSlotsRepository cardBalanceSlotsRepository;
+
+    @Autowired
+    private TransferIdempotencyKeysRepository transferIdempotencyKeysRepository;
+
+    @Autowired
+    private CardNumberCrypto cardNumberCrypto;
+
+    @Autowired
+    private TokenService tokenService;
+
+    private User user;
+    private String userToken;
+    private String adminToken;
+    private final List<Card> cards = new ArrayList<>();
+    private final List<String> cardNumbers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        user = usersRepository.save(new User("budget_user", "password", Role.USER));
+        User admin = usersRepository.save(new User("budget_admin", "password", Role.ADMIN));
+        userToken = tokenService.generateAccessToken(user);
+        adminToken = tokenService.generateAccessToken(admin);
+
+        for (int i = 0; i < CARDS; i++) {
+            String cardNumber = String.format("4100%012d", i);
+            cards.add(cardsRepository.save(new Card(
+                    cardNumberCrypto.encrypt(cardNumber),
+                    cardNumberCrypto.hash(cardNumber),
+                    CardNumberCrypto.lastFour(cardNumber),
+                    user,
+                    new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(365)),
+                    CardStatus.ACTIVE,
+                    new BigDecimal("1000.00")
+            )));
+            cardNumbers.add(cardNumber);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionsRepository.deleteAll();
+        transferIdempotencyKeysRepository.deleteAll();
+        cardBalanceSlotsRepository.deleteAll();
+        cardsRepository.deleteAll();
+        usersRepository.deleteAll();
+    }
+
+    @Test
+    void cardEndpoints_stayWithinBudget() throws Exception {
+        Long cardId = cards.get(0).getId();
+
+        mockMvc.perform(get("/cards/" + cardId).header("Authorization", "Bearer " + userToken))
+                .andExpect(status().isOk())
+                .andExpect(header().string(QueryCountFilter.QUERY_COUNT_HEADER, "1"));
+        mockMvc.perform(get("/cards/" + cardId + "/balance").header("Authorization", "Bearer " + userToken))
+                .andExpect(status().isOk())
+                .andExpect(header().string(QueryCountFilter.QUERY_COUNT_HEADER, "1"));
+        mockMvc.perform(get("/admin/cards/" + cardId).header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(header().string(QueryCountFilter.QUERY_COUNT_HEADER, "1"));
+    }
+
+    @Test
+    void cardListings_doNotLoadOwnersPerCard() throws Exception {
+        // The default sort is by balance, which first checks whether the owner has sharded cards
+        mockMvc.perform(get("/cards/cards?limit=2").header("Authorization", "Bearer " + userToken))
+                .andExpect(status().isOk())
+                .andExpect(header().string(QueryCountFilter.QUERY_COUNT_HEADER, "3"));
+        mockMvc.perform(get("/cards/cards?withTotal=false").header("Authorization", "Bearer " + userToken))
+                .andExpect(status().isOk())
+                .andExpect(header().string(QueryCountFilter.QUERY_COUNT_HEADER, "2"));
+        mockMvc.perform(get("/cards/cards?withTotal=false&sort=id:asc").header("Authorization", "Bearer " + userToken))
+                .andExpect(status().isOk())
+                .andExpect(header().string(QueryCountFilter.QUERY_COUNT_HEADER, "1"));
+        mockMvc.perform(get("/admin/users/" + user.getId() + "/cards?cursor=").header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(header().string(QueryCountFilter.QUERY_COUNT_HEADER, "2"));
+    }
+
+    @Test
+    void transfer_staysWithinBudget() throws Exception {
+        mockMvc.perform(patch("/admin/cards/" + cards.get(1).getId() + "/balance-slots")
+                        .header("Authorization", "Bearer " + adminToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"slots\": 4}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(patch("/transactions/transfers")
+                        .header("Authorization", "Bearer " + userToken)
+                        .header("Idempotency-Key", "budget-key")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(String.format("{\"fromCard\": \"%s\", \"toCard\": \"%s\", \"amount\": 10.00}",
+                                cardNumbers.get(0), cardNumbers.get(1))))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(QueryCountFilter.QUERY_COUNT_HEADER));
+        mockMvc.perform(get("/cards/" + cards.get(1).getId() + "/balance").header("Authorization", "Bearer " + userToken))
+                .andExpect(status().isOk())
+                .andExpect(header().string(QueryCountFilter.QUERY_COUNT_HEADER, "2"));
+        // The slots of the sharded cards on the page are summed within the page query, not one query per card
+        mockMvc.perform(patch("/admin/cards/" + cards.get(2).getId() + "/balance-slots")
+                        .header("Authorization", "Bearer " + adminToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"slots\": 2}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/cards/cards?withTotal=false").header("Authorization", "Bearer " + userToken))
+                .andExpect(status().isOk())
+                .andExpect(header().string(QueryCountFilter.QUERY_COUNT_HEADER, "2"));
+    }
+
+    @Test
+    void transactionHistory_staysWithinBudget() throws Exception {
+        mockMvc.perform(patch("/transactions/transfers")
+                        .header("Authorization", "Bearer " + userToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(String.format("{\"fromCard\": \"%s\", \"toCard\": \"%s\", \"amount\": 10.00}",
+                                cardNumbers.get(0), cardNumbers.get(1))))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/cards/" + cards.get(0).getId() + "/transactions").header("Authorization", "Bearer " + userToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].direction").value("OUTGOING"))
+                .andExpect(jsonPath("$.content[0].counterpartCardNumber").value("**** **** **** 0001"))
+                .andExpect(header().string(QueryCountFilter.QUERY_COUNT_HEADER, "2"));
+    }
+}
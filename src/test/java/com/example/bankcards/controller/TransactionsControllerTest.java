@@ -1,29 +1,44 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.BatchTransactionResponse;
+import com.example.bankcards.dto.BatchTransactionResult;
 import com.example.bankcards.dto.TransactionRequest;
+import com.example.bankcards.enums.TransferStatus;
+import com.example.bankcards.exception.IdempotencyKeyException;
 import com.example.bankcards.exception.InvalidCurrencyAmount;
 import com.example.bankcards.security.UserPrincipal;
+import com.example.bankcards.security.VerifiedTokenCache;
 import com.example.bankcards.service.TokenService;
 import com.example.bankcards.service.TransactionsService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.util.List;
+
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(controllers = TransactionsController.class)
+@Import(MetricsTestConfig.class)
 class TransactionsControllerTest {
 
     @Autowired
@@ -35,6 +50,9 @@ class TransactionsControllerTest {
     @MockitoBean
     TokenService tokenService;
 
+    @MockitoBean
+    VerifiedTokenCache verifiedTokenCache;
+
     private UserPrincipal user;
 
     @BeforeEach
@@ -52,6 +70,9 @@ class TransactionsControllerTest {
                 }
                 """;
 
+        when(transactionsService.transfer(any(TransactionRequest.class), eq(user.getUserId()), isNull()))
+                .thenReturn(true);
+
         mockMvc.perform(patch("/transactions/transfers")
                         .with(SecurityMockMvcRequestPostProcessors.csrf())
                         .with(SecurityMockMvcRequestPostProcessors.authentication(
@@ -59,10 +80,60 @@ class TransactionsControllerTest {
                         ))
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(requestBody))
-                .andExpect(status().isOk());
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"));
 
         verify(transactionsService, times(1))
-                .transfer(any(TransactionRequest.class), eq(user.getUserId()));
+                .transfer(any(TransactionRequest.class), eq(user.getUserId()), isNull());
+    }
+
+    @Test
+    void transfer_idempotentReplay() throws Exception {
+        String requestBody = """
+                {
+                    "fromCard": "1234567812345678",
+                    "toCard": "8765432187654321",
+                    "amount": 100.50
+                }
+                """;
+
+        when(transactionsService.transfer(any(TransactionRequest.class), eq(user.getUserId()), eq("key-1")))
+                .thenReturn(false);
+
+        mockMvc.perform(patch("/transactions/transfers")
+                        .with(SecurityMockMvcRequestPostProcessors.csrf())
+                        .with(SecurityMockMvcRequestPostProcessors.authentication(
+                                new UsernamePasswordAuthenticationToken(user, null, null)
+                        ))
+                        .header("Idempotency-Key", "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "true"));
+    }
+
+    @Test
+    void transfer_idempotencyKeyReusedForDifferentTransfer() throws Exception {
+        String requestBody = """
+                {
+                    "fromCard": "1234567812345678",
+                    "toCard": "8765432187654321",
+                    "amount": 100.50
+                }
+                """;
+
+        doThrow(new IdempotencyKeyException("Idempotency key was already used for a different transfer"))
+                .when(transactionsService).transfer(any(TransactionRequest.class), eq(user.getUserId()), eq("key-1"));
+
+        mockMvc.perform(patch("/transactions/transfers")
+                        .with(SecurityMockMvcRequestPostProcessors.csrf())
+                        .with(SecurityMockMvcRequestPostProcessors.authentication(
+                                new UsernamePasswordAuthenticationToken(user, null, null)
+                        ))
+                        .header("Idempotency-Key", "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(status().isUnprocessableEntity());
     }
 
     @Test
@@ -76,7 +147,7 @@ class TransactionsControllerTest {
                 """;
 
         doThrow(new InvalidCurrencyAmount("Amount must be greater than or equal to 0.01"))
-                .when(transactionsService).transfer(any(TransactionRequest.class), eq(user.getUserId()));
+                .when(transactionsService).transfer(any(TransactionRequest.class), eq(user.getUserId()), isNull());
 
         mockMvc.perform(patch("/transactions/transfers")
                         .with(SecurityMockMvcRequestPostProcessors.csrf())
@@ -87,4 +158,48 @@ class TransactionsControllerTest {
                         .content(requestBody))
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    void transferBatch_success() throws Exception {
+        String requestBody = """
+                {
+                    "transfers": [
+                        {"fromCard": "1234567812345678", "toCard": "8765432187654321", "amount": 100.50},
+                        {"fromCard": "8765432187654321", "toCard": "1234567812345678", "amount": 5000.00}
+                    ]
+                }
+                """;
+
+        when(transactionsService.transferBatch(anyList(), eq(user.getUserId())))
+                .thenReturn(new BatchTransactionResponse(1, 1, List.of(
+                        new BatchTransactionResult(0, TransferStatus.COMPLETED, null),
+                        new BatchTransactionResult(1, TransferStatus.FAILED, "Insufficient funds")
+                )));
+
+        mockMvc.perform(patch("/transactions/transfers/batch")
+                        .with(SecurityMockMvcRequestPostProcessors.csrf())
+                        .with(SecurityMockMvcRequestPostProcessors.authentication(
+                                new UsernamePasswordAuthenticationToken(user, null, null)
+                        ))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.completed").value(1))
+                .andExpect(jsonPath("$.results[1].status").value("FAILED"))
+                .andExpect(jsonPath("$.results[1].error").value("Insufficient funds"));
+    }
+
+    @Test
+    void transferBatch_emptyBatch() throws Exception {
+        mockMvc.perform(patch("/transactions/transfers/batch")
+                        .with(SecurityMockMvcRequestPostProcessors.csrf())
+                        .with(SecurityMockMvcRequestPostProcessors.authentication(
+                                new UsernamePasswordAuthenticationToken(user, null, null)
+                        ))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"transfers\": []}"))
+                .andExpect(status().isBadRequest());
+
+        verify(transactionsService, never()).transferBatch(anyList(), any());
+    }
 }
@@ -0,0 +1,18 @@
+package com.example.bankcards.exception;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BusinessExceptionTest {
+
+    @Test
+    void businessException_hasNoStackTrace() {
+        CardNotFoundException e = new CardNotFoundException("Card not found");
+        e.addSuppressed(new IllegalStateException());
+
+        assertEquals("Card not found", e.getMessage());
+        assertEquals(0, e.getStackTrace().length);
+        assertEquals(0, e.getSuppressed().length);
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.bankcards.jfr;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TransferEventTest {
+
+    @Test
+    void amountBucket_isPowerOfTenRange() {
+        assertEquals("0-1", TransferEvent.amountBucket(new BigDecimal("0.01")));
+        assertEquals("0-1", TransferEvent.amountBucket(new BigDecimal("0.99")));
+        assertEquals("1-10", TransferEvent.amountBucket(new BigDecimal("1.00")));
+        assertEquals("100-1000", TransferEvent.amountBucket(new BigDecimal("250.00")));
+        assertEquals("100-1000", TransferEvent.amountBucket(new BigDecimal("999.99")));
+        assertEquals("1000-10000", TransferEvent.amountBucket(new BigDecimal("1000")));
+        assertEquals("1000000-10000000", TransferEvent.amountBucket(new BigDecimal("5E+6")));
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.bankcards.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.enums.Role;
+import com.example.bankcards.service.TokenService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class VerifiedTokenCacheTest {
+
+    private TokenService tokenService;
+    private SimpleMeterRegistry meterRegistry;
+    private VerifiedTokenCache verifiedTokenCache;
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        tokenService = spy(new TokenService("access", "refresh", "1", new String[0], new String[0]));
+        meterRegistry = new SimpleMeterRegistry();
+        verifiedTokenCache = new VerifiedTokenCache(tokenService, meterRegistry, 2);
+
+        User user = new User("cached_user", "password", Role.USER);
+        user.setId(3L);
+        token = tokenService.generateAccessToken(user);
+    }
+
+    @Test
+    void authenticate_verifiesTokenOnce() {
+        UserPrincipal first = verifiedTokenCache.authenticate(token);
+        UserPrincipal second = verifiedTokenCache.authenticate(token);
+
+        assertEquals(3L, first.getUserId());
+        assertEquals("cached_user", first.getUsername());
+        assertEquals("USER", first.getRole());
+        assertSame(first, second);
+        verify(tokenService, times(1)).validateAccessToken(token);
+        assertEquals(1.0, meterRegistry.counter("bank.auth.token-cache", "result", "hit").count());
+        assertEquals(1.0, meterRegistry.counter("bank.auth.token-cache", "result", "miss").count());
+        assertEquals(1, meterRegistry.timer("bank.auth.token.verification").count());
+    }
+
+    @Test
+    void authenticate_expiredTokenIsVerifiedAgain() throws InterruptedException {
+        String shortLived = JWT.create()
+                .withKeyId("1")
+                .withSubject("Bank details")
+                .withIssuer("bank-service")
+                .withClaim("id", 3L)
+                .withExpiresAt(new Date(System.currentTimeMillis() + 1000))
+                .sign(Algorithm.HMAC256("access"));
+
+        verifiedTokenCache.authenticate(shortLived);
+        Thread.sleep(1100);
+
+        assertThrows(JWTVerificationException.class, () -> verifiedTokenCache.authenticate(shortLived));
+        verify(tokenService, times(2)).validateAccessToken(shortLived);
+    }
+
+    @Test
+    void authenticate_invalidTokenIsNotCached() {
+        String invalid = token.substring(0, token.length() - 2);
+
+        assertThrows(JWTVerificationException.class, () -> verifiedTokenCache.authenticate(invalid));
+        assertThrows(JWTVerificationException.class, () -> verifiedTokenCache.authenticate(invalid));
+        verify(tokenService, times(2)).validateAccessToken(invalid);
+    }
+
+    @Test
+    void authenticate_cacheSizeIsCapped() {
+        for (long id = 1; id <= 5; id++) {
+            User user = new User("user" + id, "password", Role.USER);
+            user.setId(id);
+            verifiedTokenCache.authenticate(tokenService.generateAccessToken(user));
+        }
+
+        assertEquals(2.0, meterRegistry.get("bank.auth.token-cache.size").gauge().value());
+    }
+}
@@ -34,13 +34,21 @@ class AdminCardsServiceTest {
     @Mock
     private AdminUsersService adminUsersService;
 
+    @Mock
+    private CardBalanceService cardBalanceService;
+
+    @Mock
+    private CardCountCache cardCountCache;
+
     @InjectMocks
     private AdminCardsService adminCardsService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        adminCardsService = new AdminCardsService(cardsRepository, bankModelMapper, adminUsersService, cardNumberCrypto);
+        adminCardsService = new AdminCardsService(
+                cardsRepository, bankModelMapper, adminUsersService, cardNumberCrypto, cardBalanceService, cardCountCache
+        );
     }
 
     @Test
@@ -48,7 +56,7 @@ class AdminCardsServiceTest {
         User user = new User();
         user.setId(2L);
 
-        Card card = new Card("encrypted-number", user, new Date(), CardStatus.ACTIVE, BigDecimal.TEN);
+        Card card = new Card("encrypted-number", "card-number-hash", "5678", user, new Date(), CardStatus.ACTIVE, BigDecimal.TEN);
         card.setId(1L);
 
         CardResponse response = new CardResponse();
@@ -80,7 +88,8 @@ class AdminCardsServiceTest {
 
         adminCardsService.create(5L);
 
-        verify(cardsRepository).save(any(Card.class));
+        verify(cardsRepository).save(argThat(card -> card.getCardLast4() != null && card.getCardLast4().matches("\\d{4}")));
+        verify(cardCountCache).invalidate(5L);
     }
 
     @Test
@@ -95,12 +104,16 @@ class AdminCardsServiceTest {
     void setStatus_success() {
         Card card = new Card();
         card.setId(1L);
+        User owner = new User();
+        owner.setId(2L);
+        card.setOwner(owner);
 
         when(cardsRepository.findById(1L)).thenReturn(Optional.of(card));
 
         adminCardsService.setStatus(1L, CardStatus.BLOCKED);
 
         assertThat(card.getStatus()).isEqualTo(CardStatus.BLOCKED);
+        verify(cardCountCache).invalidate(2L);
     }
 
     @Test
@@ -115,12 +128,16 @@ class AdminCardsServiceTest {
     void deleteCard_success() {
         Card card = new Card();
         card.setId(1L);
+        User owner = new User();
+        owner.setId(2L);
+        card.setOwner(owner);
 
         when(cardsRepository.findById(1L)).thenReturn(Optional.of(card));
 
         adminCardsService.deleteCard(1L);
 
         verify(cardsRepository).deleteById(1L);
+        verify(cardCountCache).invalidate(2L);
     }
 
     @Test
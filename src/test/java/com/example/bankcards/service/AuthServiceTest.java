@@ -30,7 +30,10 @@ class AuthServiceTest {
         passwordEncoder = mock(PasswordEncoder.class);
         refreshTokensRepository = mock(RefreshTokensRepository.class);
 
-        authService = new AuthService(usersRepository, passwordEncoder, refreshTokensRepository);
+        authService = new AuthService(
+                usersRepository, new PasswordHashingService(passwordEncoder, 10, 1, 4),
+                new DatabaseRefreshTokenStore(refreshTokensRepository)
+        );
     }
 
     @Test
@@ -104,15 +107,68 @@ class AuthServiceTest {
         assertThrows(UserNotFoundException.class, () -> authService.checkAndGet(user));
     }
 
+    @Test
+    void checkAndGet_otherBcryptCost_rehashesPassword() {
+        User user = new User();
+        user.setUsername("user");
+        user.setPassword("password");
+
+        User userFromDb = new User();
+        userFromDb.setUsername("user");
+        userFromDb.setId(1L);
+        userFromDb.setPassword("$2a$04$oldHash");
+
+        when(usersRepository.findByUsername("user")).thenReturn(Optional.of(userFromDb));
+        when(passwordEncoder.matches("password", "$2a$04$oldHash")).thenReturn(true);
+        when(passwordEncoder.encode("password")).thenReturn("$2a$10$newHash");
+
+        authService.checkAndGet(user);
+
+        assertEquals("$2a$10$newHash", userFromDb.getPassword());
+        verify(usersRepository).updatePassword(1L, "$2a$10$newHash");
+    }
+
+    @Test
+    void checkAndGet_sameBcryptCost_keepsPassword() {
+        User user = new User();
+        user.setUsername("user");
+        user.setPassword("password");
+
+        User userFromDb = new User();
+        userFromDb.setUsername("user");
+        userFromDb.setPassword("$2a$10$hash");
+
+        when(usersRepository.findByUsername("user")).thenReturn(Optional.of(userFromDb));
+        when(passwordEncoder.matches("password", "$2a$10$hash")).thenReturn(true);
+
+        authService.checkAndGet(user);
+
+        assertEquals("$2a$10$hash", userFromDb.getPassword());
+        verify(passwordEncoder, never()).encode(any());
+        verify(usersRepository, never()).updatePassword(any(), any());
+    }
+
+    @Test
+    void isCurrentRefreshToken_comparesStoredHash() {
+        when(refreshTokensRepository.findByUserId(1L))
+                .thenReturn(Optional.of(new RefreshToken(1L, RefreshTokenStore.hash("currentToken"))));
+        when(refreshTokensRepository.findByUserId(2L)).thenReturn(Optional.empty());
+
+        assertTrue(authService.isCurrentRefreshToken(1L, "currentToken"));
+        assertFalse(authService.isCurrentRefreshToken(1L, "oldToken"));
+        assertFalse(authService.isCurrentRefreshToken(2L, "currentToken"));
+    }
+
     @Test
     void updateRefreshToken_existingToken_updatesToken() {
         Long userId = 1L;
-        RefreshToken existing = new RefreshToken(userId, "oldToken");
+        RefreshToken existing = new RefreshToken(userId, RefreshTokenStore.hash("oldToken"));
         when(refreshTokensRepository.findByUserId(userId)).thenReturn(Optional.of(existing));
 
         authService.updateRefreshToken(userId, "newToken");
 
-        assertEquals("newToken", existing.getRefreshToken());
+        assertArrayEquals(RefreshTokenStore.hash("newToken"), existing.getRefreshTokenHash());
+        assertEquals(32, existing.getRefreshTokenHash().length);
         verify(refreshTokensRepository, never()).save(any());
     }
 
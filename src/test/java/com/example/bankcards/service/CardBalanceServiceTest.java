@@ -0,0 +1,187 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardBalanceSlot;
+import com.example.bankcards.exception.CardInsufficientFunds;
+import com.example.bankcards.repository.CardBalanceSlotsRepository;
+import com.example.bankcards.service.CardBalanceService.SlotChanges;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CardBalanceServiceTest {
+
+    private CardBalanceSlotsRepository slotsRepository;
+    private CardBalanceService cardBalanceService;
+
+    private Card card;
+
+    @BeforeEach
+    void setUp() {
+        slotsRepository = mock(CardBalanceSlotsRepository.class);
+        cardBalanceService = new CardBalanceService(slotsRepository);
+
+        card = new Card();
+        card.setId(1L);
+        card.setBalance(new BigDecimal("100.00"));
+    }
+
+    @Test
+    void debit_unshardedCard_updatesCardBalance() {
+        cardBalanceService.debit(card, new BigDecimal("40.00"), new SlotChanges());
+
+        assertEquals(new BigDecimal("60.00"), card.getBalance());
+        verifyNoInteractions(slotsRepository);
+    }
+
+    @Test
+    void debit_unshardedCard_insufficientFunds() {
+        assertThrows(CardInsufficientFunds.class,
+                () -> cardBalanceService.debit(card, new BigDecimal("100.01"), new SlotChanges()));
+        assertEquals(new BigDecimal("100.00"), card.getBalance());
+    }
+
+    @Test
+    void debit_shardedCard_takesFromOneSlotWithEnoughBalance() {
+        shard(4);
+        when(slotsRepository.findBalances(1L)).thenReturn(List.of(
+                new BigDecimal("5.00"), new BigDecimal("5.00"), new BigDecimal("20.00"), new BigDecimal("5.00")
+        ));
+        SlotChanges changes = new SlotChanges();
+
+        cardBalanceService.debit(card, new BigDecimal("10.00"), changes);
+        verifyNoMoreInteractions(ignoreStubs(slotsRepository));
+        when(slotsRepository.debit(1L, 2, new BigDecimal("10.00"))).thenReturn(true);
+        cardBalanceService.apply(changes);
+
+        verify(slotsRepository).debit(1L, 2, new BigDecimal("10.00"));
+        verify(slotsRepository, never()).lockBalances(any());
+    }
+
+    @Test
+    void debit_shardedCard_drainsSeveralSlotsWhenNoSlotHasEnough() {
+        shard(3);
+        when(slotsRepository.findBalances(1L)).thenReturn(List.of(
+                new BigDecimal("5.00"), new BigDecimal("0.00"), new BigDecimal("12.00")
+        ));
+        when(slotsRepository.debit(eq(1L), anyInt(), any())).thenReturn(true);
+        SlotChanges changes = new SlotChanges();
+
+        // The second debit sees what the first one left in the slots and both are written as one change per slot
+        cardBalanceService.debit(card, new BigDecimal("15.00"), changes);
+        cardBalanceService.debit(card, new BigDecimal("2.00"), changes);
+        cardBalanceService.apply(changes);
+
+        verify(slotsRepository).debit(1L, 0, new BigDecimal("5.00"));
+        verify(slotsRepository).debit(1L, 2, new BigDecimal("12.00"));
+        verify(slotsRepository, never()).debit(eq(1L), eq(1), any());
+        verify(slotsRepository).findBalances(1L);
+    }
+
+    @Test
+    void debit_shardedCard_insufficientFunds() {
+        shard(2);
+        when(slotsRepository.findBalances(1L)).thenReturn(List.of(new BigDecimal("5.00"), new BigDecimal("5.00")));
+        SlotChanges changes = new SlotChanges();
+
+        assertThrows(CardInsufficientFunds.class, () -> cardBalanceService.debit(card, new BigDecimal("10.01"), changes));
+        cardBalanceService.apply(changes);
+
+        verify(slotsRepository, never()).debit(any(), anyInt(), any());
+    }
+
+    @Test
+    void debit_shardedCard_slotCountChangedConcurrently() {
+        shard(3);
+        when(slotsRepository.findBalances(1L)).thenReturn(List.of(new BigDecimal("5.00")));
+
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> cardBalanceService.debit(card, new BigDecimal("1.00"), new SlotChanges()));
+    }
+
+    @Test
+    void apply_writesSlotsInCardAndSlotOrder() {
+        shard(4);
+        Card other = new Card();
+        other.setId(2L);
+        other.setBalance(new BigDecimal("0.00"));
+        other.setBalanceSlots(4);
+        when(slotsRepository.credit(anyLong(), anyInt(), any())).thenReturn(true);
+        SlotChanges changes = new SlotChanges();
+
+        for (int i = 0; i < 20; i++) {
+            cardBalanceService.credit(i % 2 == 0 ? other : card, new BigDecimal("1.00"), changes);
+        }
+        cardBalanceService.apply(changes);
+
+        ArgumentCaptor<Long> cardIds = ArgumentCaptor.forClass(Long.class);
+        ArgumentCaptor<Integer> slots = ArgumentCaptor.forClass(Integer.class);
+        ArgumentCaptor<BigDecimal> amounts = ArgumentCaptor.forClass(BigDecimal.class);
+        verify(slotsRepository, atLeast(2)).credit(cardIds.capture(), slots.capture(), amounts.capture());
+        for (int i = 1; i < cardIds.getAllValues().size(); i++) {
+            long previous = cardIds.getAllValues().get(i - 1) * 100 + slots.getAllValues().get(i - 1);
+            assertTrue(previous < cardIds.getAllValues().get(i) * 100 + slots.getAllValues().get(i));
+        }
+        assertEquals(new BigDecimal("20.00"), amounts.getAllValues().stream().reduce(BigDecimal.ZERO, BigDecimal::add));
+    }
+
+    @Test
+    void apply_slotDrainedConcurrently() {
+        shard(1);
+        when(slotsRepository.findBalances(1L)).thenReturn(List.of(new BigDecimal("20.00")));
+        when(slotsRepository.debit(1L, 0, new BigDecimal("10.00"))).thenReturn(false);
+        SlotChanges changes = new SlotChanges();
+        cardBalanceService.debit(card, new BigDecimal("10.00"), changes);
+
+        assertThrows(OptimisticLockingFailureException.class, () -> cardBalanceService.apply(changes));
+    }
+
+    @Test
+    void credit_shardedCard_slotsChangedConcurrently() {
+        shard(2);
+        when(slotsRepository.credit(eq(1L), anyInt(), any())).thenReturn(false);
+        SlotChanges changes = new SlotChanges();
+        cardBalanceService.credit(card, new BigDecimal("1.00"), changes);
+
+        assertThrows(OptimisticLockingFailureException.class, () -> cardBalanceService.apply(changes));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void changeSlots_spreadsBalanceEvenly() {
+        cardBalanceService.changeSlots(card, 3);
+
+        verify(slotsRepository).saveAll(argThat((List<CardBalanceSlot> slots) ->
+                slots.size() == 3
+                        && slots.get(0).getBalance().equals(new BigDecimal("33.34"))
+                        && slots.get(1).getBalance().equals(new BigDecimal("33.33"))
+                        && slots.get(2).getBalance().equals(new BigDecimal("33.33"))));
+        assertEquals(3, card.getBalanceSlots());
+        assertEquals(0, card.getBalance().signum());
+    }
+
+    @Test
+    void changeSlots_toZero_movesBalanceBackToCard() {
+        shard(2);
+        when(slotsRepository.lockBalances(1L)).thenReturn(List.of(new BigDecimal("30.00"), new BigDecimal("12.50")));
+
+        cardBalanceService.changeSlots(card, 0);
+
+        verify(slotsRepository).deleteAllByCardId(1L);
+        assertEquals(new BigDecimal("42.50"), card.getBalance());
+        assertEquals(0, card.getBalanceSlots());
+    }
+
+    private void shard(int slots) {
+        card.setBalance(new BigDecimal("0.00"));
+        card.setBalanceSlots(slots);
+    }
+}
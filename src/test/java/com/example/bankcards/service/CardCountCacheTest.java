@@ -0,0 +1,46 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.enums.CardStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CardCountCacheTest {
+
+    @Test
+    void count_cachedPerOwnerAndStatus() {
+        CardCountCache cache = new CardCountCache(100, 60_000);
+        AtomicInteger counts = new AtomicInteger();
+
+        assertEquals(5, cache.count(1L, null, () -> { counts.incrementAndGet(); return 5; }));
+        assertEquals(5, cache.count(1L, null, () -> { counts.incrementAndGet(); return 7; }));
+        assertEquals(2, cache.count(1L, CardStatus.ACTIVE, () -> { counts.incrementAndGet(); return 2; }));
+        assertEquals(9, cache.count(2L, null, () -> { counts.incrementAndGet(); return 9; }));
+
+        assertEquals(3, counts.get());
+    }
+
+    @Test
+    void count_invalidateDropsAllCountsOfOwner() {
+        CardCountCache cache = new CardCountCache(100, 60_000);
+        cache.count(1L, null, () -> 5);
+        cache.count(1L, CardStatus.BLOCKED, () -> 1);
+        cache.count(2L, null, () -> 9);
+
+        cache.invalidate(1L);
+
+        assertEquals(6, cache.count(1L, null, () -> 6));
+        assertEquals(0, cache.count(1L, CardStatus.BLOCKED, () -> 0));
+        assertEquals(9, cache.count(2L, null, () -> 10));
+    }
+
+    @Test
+    void count_expiredCountIsRecounted() {
+        CardCountCache cache = new CardCountCache(100, 0);
+        cache.count(1L, null, () -> 5);
+
+        assertEquals(6, cache.count(1L, null, () -> 6));
+    }
+}
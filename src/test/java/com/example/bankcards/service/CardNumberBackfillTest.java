@@ -0,0 +1,57 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.enums.CardStatus;
+import com.example.bankcards.enums.Role;
+import com.example.bankcards.repository.CardsRepository;
+import com.example.bankcards.repository.UsersRepository;
+import com.example.bankcards.util.CardNumberCrypto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles({"development", "h2"})
+class CardNumberBackfillTest {
+
+    @Autowired
+    private CardNumberBackfill cardNumberBackfill;
+
+    @Autowired
+    private CardsRepository cardsRepository;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @Autowired
+    private CardNumberCrypto cardNumberCrypto;
+
+    @AfterEach
+    void tearDown() {
+        cardsRepository.deleteAll();
+        usersRepository.deleteAll();
+    }
+
+    @Test
+    void backfill_makesLegacyCardsFindableByHash() {
+        User user = usersRepository.save(new User("backfill_user", "password", Role.USER));
+        Card card = cardsRepository.save(new Card(
+                cardNumberCrypto.encrypt("4400000000000001"), null, null, user,
+                new Date(System.currentTimeMillis() + 365L * 24 * 60 * 60 * 1000), CardStatus.ACTIVE, new BigDecimal("10.00")
+        ));
+
+        cardNumberBackfill.afterSingletonsInstantiated();
+
+        Card backfilled = cardsRepository.findByCardNumberHash(cardNumberCrypto.hash("4400000000000001")).orElseThrow();
+        assertEquals(card.getId(), backfilled.getId());
+        assertEquals("0001", backfilled.getCardLast4());
+    }
+}
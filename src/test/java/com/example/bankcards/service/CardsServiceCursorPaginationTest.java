@@ -0,0 +1,226 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.PageResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.enums.CardStatus;
+import com.example.bankcards.enums.Role;
+import com.example.bankcards.exception.InvalidCursorException;
+import com.example.bankcards.repository.CardBalanceSlotsRepository;
+import com.example.bankcards.repository.CardsRepository;
+import com.example.bankcards.repository.UsersRepository;
+import com.example.bankcards.util.CardNumberCrypto;
+import com.example.bankcards.util.PageCursor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Cursor pagination of {@link CardsService#getUserCards} against an in-memory database:
+ * walking all pages must return every card exactly once and in a stable order, also when many cards share the same sort key.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles({"development", "h2"})
+class CardsServiceCursorPaginationTest {
+
+    private static final int CARDS = 23;
+
+    @Autowired
+    private CardsService cardsService;
+
+    @Autowired
+    private CardsRepository cardsRepository;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @Autowired
+    private CardNumberCrypto cardNumberCrypto;
+
+    @Autowired
+    private CardBalanceSlotsRepository cardBalanceSlotsRepository;
+
+    @Autowired
+    private AdminCardsService adminCardsService;
+
+    @Autowired
+    private CardBalanceService cardBalanceService;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = usersRepository.save(new User("cursor_user", "password", Role.USER));
+        User otherUser = usersRepository.save(new User("other_cursor_user", "password", Role.USER));
+        for (int i = 0; i < CARDS; i++) {
+            // Only four distinct balances, so most pages end in the middle of a run of equal sort keys
+            createCard(user, i, BigDecimal.valueOf(i % 4 * 100).setScale(2), i % 3 == 0 ? CardStatus.BLOCKED : CardStatus.ACTIVE);
+        }
+        createCard(otherUser, CARDS, new BigDecimal("100.00"), CardStatus.ACTIVE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cardBalanceSlotsRepository.deleteAll();
+        cardsRepository.deleteAll();
+        usersRepository.deleteAll();
+    }
+
+    @Test
+    void getUserCards_cursor_returnsEveryCardOnce() {
+        for (String sort : List.of("balance:desc", "balance:asc", "id:asc", "expiryDate:desc", "status:asc")) {
+            List<Long> ids = walk(sort, 5, null);
+
+            assertEquals(CARDS, ids.size(), sort);
+            assertEquals(CARDS, ids.stream().distinct().count(), sort);
+        }
+    }
+
+    @Test
+    void getUserCards_cursor_idTiebreakerGivesStableOrder() {
+        List<Long> ids = walk("balance:desc", 4, null);
+
+        assertEquals(CARDS, ids.size());
+        assertEquals(CARDS, ids.stream().distinct().count());
+        List<Card> cards = new ArrayList<>(cardsRepository.findAllById(ids));
+        cards.sort((a, b) -> ids.indexOf(a.getId()) - ids.indexOf(b.getId()));
+        for (int i = 1; i < cards.size(); i++) {
+            Card previous = cards.get(i - 1);
+            Card current = cards.get(i);
+            int byBalance = current.getBalance().compareTo(previous.getBalance());
+            assertTrue(byBalance < 0 || (byBalance == 0 && current.getId() < previous.getId()));
+        }
+    }
+
+    @Test
+    void getUserCards_cursor_appliesFilters() {
+        List<Long> ids = walk("balance:asc", 3, CardStatus.BLOCKED);
+
+        long blocked = cardsRepository.findAll().stream()
+                .filter(card -> card.getOwner().getId().equals(user.getId()) && card.getStatus() == CardStatus.BLOCKED)
+                .count();
+        assertEquals(blocked, ids.size());
+    }
+
+    @Test
+    void getUserCards_cursor_lastPageHasNoNextCursor() {
+        PageResponse<CardResponse> page = cardsService.getUserCards(
+                user.getId(), 0, CARDS, new String[]{"balance:desc"}, null, null, null, "", true);
+
+        assertEquals(CARDS, page.getContent().size());
+        assertNull(page.getNextCursor());
+        assertNull(page.getTotalElements());
+    }
+
+    @Test
+    void getUserCards_withoutTotal_pagesMatchCursorPages() {
+        List<Long> ids = new ArrayList<>();
+        int page = 0;
+        PageResponse<CardResponse> response;
+        do {
+            response = cardsService.getUserCards(
+                    user.getId(), page++, 5, new String[]{"id:asc"}, null, null, null, null, false);
+            response.getContent().forEach(card -> ids.add(card.getId()));
+            assertNull(response.getTotalElements());
+        } while (response.getHasNext());
+
+        assertEquals(walk("id:asc", 5, null), ids);
+    }
+
+    @Test
+    void getUserCards_projectedCardsMatchLoadedCards() {
+        PageResponse<CardResponse> page = cardsService.getUserCards(
+                user.getId(), 0, CARDS, new String[]{"id:asc"}, null, null, null, null, true);
+
+        for (CardResponse listed : page.getContent()) {
+            CardResponse loaded = cardsService.findOne(listed.getId(), user.getId());
+            assertEquals(loaded.getOwnerId(), listed.getOwnerId());
+            assertEquals(loaded.getCardNumber(), listed.getCardNumber());
+            assertEquals(loaded.getExpiryDate(), listed.getExpiryDate());
+            assertEquals(loaded.getStatus(), listed.getStatus());
+            assertEquals(loaded.getBalance(), listed.getBalance());
+        }
+    }
+
+    @Test
+    void getUserCards_shardedCards_filteredAndSortedBySlotBalances() {
+        // card.balance of a sharded card is zero, its balance is in the slots
+        List<Card> ownCards = cardsRepository.findAll().stream()
+                .filter(card -> card.getOwner().getId().equals(user.getId()))
+                .toList();
+        for (Card card : ownCards.subList(0, 6)) {
+            adminCardsService.setBalanceSlots(card.getId(), 3);
+        }
+
+        for (String sort : List.of("balance:desc", "balance:asc")) {
+            List<Long> ids = walk(sort, 4, null);
+            assertEquals(CARDS, ids.stream().distinct().count(), sort);
+            List<BigDecimal> balances = ids.stream()
+                    .map(id -> cardBalanceService.getBalance(cardsRepository.findById(id).orElseThrow()))
+                    .toList();
+            for (int i = 1; i < balances.size(); i++) {
+                int order = balances.get(i).compareTo(balances.get(i - 1));
+                assertTrue(sort.endsWith("desc") ? order <= 0 : order >= 0, sort);
+            }
+        }
+
+        PageResponse<CardResponse> page = cardsService.getUserCards(
+                user.getId(), 0, CARDS, new String[]{"balance:desc"}, null, new BigDecimal("200.00"), new BigDecimal("300.00"), null, true);
+        long expected = ownCards.stream()
+                .filter(card -> card.getBalance().compareTo(new BigDecimal("200.00")) >= 0)
+                .count();
+        assertEquals(expected, page.getTotalElements());
+        page.getContent().forEach(card -> assertTrue(card.getBalance().compareTo(new BigDecimal("200.00")) >= 0));
+        assertEquals(new BigDecimal("300.00"), page.getContent().get(0).getBalance());
+    }
+
+    @Test
+    void getUserCards_cursor_rejectsCursorOfAnotherSort() {
+        String cursor = new PageCursor("balance", Sort.Direction.DESC, "100.00", 1L).encode();
+
+        assertThrows(InvalidCursorException.class, () -> cardsService.getUserCards(
+                user.getId(), 0, 5, new String[]{"balance:asc"}, null, null, null, cursor, true));
+        assertThrows(InvalidCursorException.class, () -> cardsService.getUserCards(
+                user.getId(), 0, 5, new String[]{"balance:desc"}, null, null, null, "not a cursor", true));
+        assertThrows(InvalidCursorException.class, () -> cardsService.getUserCards(
+                user.getId(), 0, 5, new String[]{"balance:desc", "id:asc"}, null, null, null, "", true));
+    }
+
+    private List<Long> walk(String sort, int limit, CardStatus status) {
+        List<Long> ids = new ArrayList<>();
+        String cursor = "";
+        do {
+            PageResponse<CardResponse> page = cardsService.getUserCards(
+                    user.getId(), 0, limit, new String[]{sort}, status, null, null, cursor, true);
+            assertTrue(page.getContent().size() <= limit);
+            page.getContent().forEach(card -> ids.add(card.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+
+    private void createCard(User owner, int index, BigDecimal balance, CardStatus status) {
+        String cardNumber = String.format("6000%012d", index);
+        cardsRepository.save(new Card(
+                cardNumberCrypto.encrypt(cardNumber),
+                cardNumberCrypto.hash(cardNumber),
+                CardNumberCrypto.lastFour(cardNumber),
+                owner,
+                new Date(System.currentTimeMillis() + index % 5 * 1000L),
+                status,
+                balance
+        ));
+    }
+}
@@ -2,21 +2,33 @@ package com.example.bankcards.service;
 
 import com.example.bankcards.dto.CardNumberResponse;
 import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.PageResponse;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.enums.CardStatus;
 import com.example.bankcards.exception.CardNotFoundException;
 import com.example.bankcards.exception.NoAuthorityException;
+import com.example.bankcards.projections.CardSummary;
+import com.example.bankcards.repository.CardBalanceSlotsRepository;
 import com.example.bankcards.repository.CardsRepository;
+import com.example.bankcards.repository.TransactionsRepository;
 import com.example.bankcards.util.BankModelMapper;
 import com.example.bankcards.util.CardNumberCrypto;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
 
 import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 class CardsServiceTest {
@@ -24,10 +36,13 @@ class CardsServiceTest {
     private CardsRepository cardsRepository;
     private CardNumberCrypto cardNumberCrypto;
     private BankModelMapper bankModelMapper;
+    private CardBalanceSlotsRepository cardBalanceSlotsRepository;
+    private TransactionsRepository transactionsRepository;
     private CardsService cardsService;
 
     private User user;
     private Card card;
+    private CardSummary summary;
 
     @BeforeEach
     void setUp() {
@@ -35,7 +50,13 @@ class CardsServiceTest {
         cardNumberCrypto = mock(CardNumberCrypto.class);
         bankModelMapper = mock(BankModelMapper.class);
 
-        cardsService = new CardsService(cardsRepository, cardNumberCrypto, bankModelMapper);
+        cardBalanceSlotsRepository = mock(CardBalanceSlotsRepository.class);
+        transactionsRepository = mock(TransactionsRepository.class);
+
+        cardsService = new CardsService(
+                cardsRepository, cardNumberCrypto, bankModelMapper, new CardBalanceService(cardBalanceSlotsRepository),
+                new CardCountCache(100, 5000), transactionsRepository
+        );
 
         user = new User();
         user.setId(1L);
@@ -46,6 +67,8 @@ class CardsServiceTest {
         card.setCardNumber("encrypted");
         card.setBalance(BigDecimal.valueOf(1000));
         card.setStatus(CardStatus.ACTIVE);
+
+        summary = new CardSummary(1L, 1L, "encrypted", "5678", new Date(), CardStatus.ACTIVE, BigDecimal.valueOf(1000), 0);
     }
 
     @Test
@@ -59,6 +82,19 @@ class CardsServiceTest {
         verify(cardsRepository, times(1)).findById(1L);
     }
 
+    @Test
+    void findOne_masksStoredLastFourWithoutDecrypting() {
+        card.setCardLast4("5678");
+        when(cardsRepository.findById(1L)).thenReturn(Optional.of(card));
+        when(bankModelMapper.convertToCardResponse(card)).thenReturn(new CardResponse());
+        when(cardNumberCrypto.maskLastFour("5678")).thenReturn("**** **** **** 5678");
+
+        CardResponse response = cardsService.findOne(1L, user.getId());
+
+        assertEquals("**** **** **** 5678", response.getCardNumber());
+        verify(cardNumberCrypto, never()).decrypt(anyString());
+    }
+
     @Test
     void findOne_cardNotFound() {
         when(cardsRepository.findById(1L)).thenReturn(Optional.empty());
@@ -76,6 +112,18 @@ class CardsServiceTest {
         assertThrows(NoAuthorityException.class, () -> cardsService.findOne(1L, user.getId()));
     }
 
+    @Test
+    void getCardTransactions_noAuthority() {
+        User otherUser = new User();
+        otherUser.setId(2L);
+        card.setOwner(otherUser);
+        when(cardsRepository.findById(1L)).thenReturn(Optional.of(card));
+
+        assertThrows(NoAuthorityException.class,
+                () -> cardsService.getCardTransactions(1L, user.getId(), 20, null, null, null, null));
+        verifyNoInteractions(transactionsRepository);
+    }
+
     @Test
     void getCardNumber_success() {
         when(cardsRepository.findById(1L)).thenReturn(Optional.of(card));
@@ -100,4 +148,95 @@ class CardsServiceTest {
         BigDecimal balance = cardsService.getBalance(1L, user.getId());
         assertEquals(BigDecimal.valueOf(1000), balance);
     }
+
+    @Test
+    void getBalance_shardedCard_sumsSlots() {
+        card.setBalance(BigDecimal.ZERO);
+        card.setBalanceSlots(4);
+        when(cardsRepository.findById(1L)).thenReturn(Optional.of(card));
+        when(cardBalanceSlotsRepository.sumBalanceByCardId(1L)).thenReturn(new BigDecimal("1000.00"));
+
+        BigDecimal balance = cardsService.getBalance(1L, user.getId());
+        assertEquals(new BigDecimal("1000.00"), balance);
+    }
+
+    @Test
+    void getUserCards_shardedOwner_sortsBySlotBalances() {
+        CardSummary sharded = new CardSummary(2L, 1L, "encrypted", "1234", new Date(), CardStatus.ACTIVE, new BigDecimal("400.00"), 4);
+        when(cardsRepository.hasShardedCards(user.getId())).thenReturn(true);
+        when(cardsRepository.findSummaries(any(), any(), anyBoolean()))
+                .thenReturn(new SliceImpl<>(List.of(summary, sharded), PageRequest.of(0, 2), false));
+        when(bankModelMapper.convertToCardResponse(any(CardSummary.class))).thenAnswer(invocation -> new CardResponse());
+
+        PageResponse<CardResponse> page = cardsService.getUserCards(
+                user.getId(), 0, 2, new String[]{"balance:desc"}, null, null, null, null, false);
+
+        assertEquals(List.of(BigDecimal.valueOf(1000), new BigDecimal("400.00")),
+                page.getContent().stream().map(CardResponse::getBalance).toList());
+        verify(cardsRepository).findSummaries(any(), any(), eq(true));
+        verifyNoInteractions(cardBalanceSlotsRepository);
+    }
+
+    @Test
+    void getUserCards_notByBalance_skipsShardedCheck() {
+        when(cardsRepository.findSummaries(any(), any(), anyBoolean()))
+                .thenReturn(new SliceImpl<>(List.of(summary), PageRequest.of(0, 1), false));
+        when(bankModelMapper.convertToCardResponse(summary)).thenReturn(new CardResponse());
+
+        cardsService.getUserCards(user.getId(), 0, 1, new String[]{"expiryDate:desc"}, null, null, null, null, false);
+
+        verify(cardsRepository, never()).hasShardedCards(any());
+        verify(cardsRepository).findSummaries(any(), any(), eq(false));
+    }
+
+    @Test
+    void getUserCards_withoutTotal_skipsCount() {
+        when(cardsRepository.findSummaries(any(), any(), anyBoolean()))
+                .thenReturn(new SliceImpl<>(List.of(summary), PageRequest.of(0, 1), true));
+        when(bankModelMapper.convertToCardResponse(summary)).thenReturn(new CardResponse());
+
+        PageResponse<CardResponse> page = cardsService.getUserCards(
+                user.getId(), 0, 1, new String[]{"balance:desc"}, null, null, null, null, false);
+
+        assertEquals(1, page.getContent().size());
+        assertTrue(page.getHasNext());
+        assertNull(page.getTotalElements());
+        verify(cardsRepository, never()).count(ArgumentMatchers.<Specification<Card>>any());
+    }
+
+    @Test
+    void getUserCards_withTotal_countIsCachedUntilCardsChange() {
+        when(cardsRepository.findSummaries(any(), any(), anyBoolean()))
+                .thenReturn(new SliceImpl<>(List.of(summary), PageRequest.of(0, 1), true));
+        when(cardsRepository.count(ArgumentMatchers.<Specification<Card>>any())).thenReturn(3L);
+        when(cardsRepository.findById(1L)).thenReturn(Optional.of(card));
+        when(bankModelMapper.convertToCardResponse(summary)).thenReturn(new CardResponse());
+
+        PageResponse<CardResponse> page = cardsService.getUserCards(
+                user.getId(), 0, 1, new String[]{"balance:desc"}, null, null, null, null, true);
+        cardsService.getUserCards(user.getId(), 1, 1, new String[]{"balance:desc"}, null, null, null, null, true);
+
+        assertEquals(3L, page.getTotalElements());
+        assertEquals(3, page.getTotalPages());
+        assertNull(page.getHasNext());
+        verify(cardsRepository, times(1)).count(ArgumentMatchers.<Specification<Card>>any());
+
+        cardsService.requestBlocking(1L, user.getId());
+        cardsService.getUserCards(user.getId(), 0, 1, new String[]{"balance:desc"}, null, null, null, null, true);
+        verify(cardsRepository, times(2)).count(ArgumentMatchers.<Specification<Card>>any());
+    }
+
+    @Test
+    void getUserCards_balanceFilter_countIsNotCached() {
+        when(cardsRepository.findSummaries(any(), any(), anyBoolean()))
+                .thenReturn(new SliceImpl<>(List.of(summary), PageRequest.of(0, 1), true));
+        when(cardsRepository.count(ArgumentMatchers.<Specification<Card>>any())).thenReturn(3L);
+        when(bankModelMapper.convertToCardResponse(summary)).thenReturn(new CardResponse());
+
+        for (int i = 0; i < 2; i++) {
+            cardsService.getUserCards(
+                    user.getId(), 0, 1, new String[]{"balance:desc"}, null, BigDecimal.TEN, null, null, true);
+        }
+        verify(cardsRepository, times(2)).count(ArgumentMatchers.<Specification<Card>>any());
+    }
 }
@@ -0,0 +1,169 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.PageResponse;
+import com.example.bankcards.dto.TransactionResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.enums.CardStatus;
+import com.example.bankcards.enums.Role;
+import com.example.bankcards.enums.TransactionDirection;
+import com.example.bankcards.exception.InvalidCursorException;
+import com.example.bankcards.repository.CardsRepository;
+import com.example.bankcards.repository.TransactionsRepository;
+import com.example.bankcards.repository.UsersRepository;
+import com.example.bankcards.util.CardNumberCrypto;
+import com.example.bankcards.util.PageCursor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Statement pagination of {@link CardsService#getCardTransactions} against an in-memory database:
+ * walking all pages must return every transaction of the card exactly once, newest first,
+ * also when many transactions share the same execution time.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles({"development", "h2"})
+class CardsServiceTransactionHistoryTest {
+
+    private static final int TRANSACTIONS = 25;
+    private static final Instant START = Instant.parse("2025-09-01T00:00:00Z");
+
+    @Autowired
+    private CardsService cardsService;
+
+    @Autowired
+    private CardsRepository cardsRepository;
+
+    @Autowired
+    private TransactionsRepository transactionsRepository;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @Autowired
+    private CardNumberCrypto cardNumberCrypto;
+
+    private User user;
+    private Card card;
+    private Card otherCard;
+
+    @BeforeEach
+    void setUp() {
+        user = usersRepository.save(new User("statement_user", "password", Role.USER));
+        card = createCard("4300000000000001");
+        otherCard = createCard("4300000000000002");
+        Card unrelatedCard = createCard("4300000000000003");
+
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            // Three transactions per minute, so most pages end in the middle of a run of equal timestamps
+            Date executedAt = Date.from(START.plusSeconds(i / 3 * 60L));
+            boolean outgoing = i % 2 == 0;
+            transactions.add(new Transaction(
+                    outgoing ? card.getCardNumber() : otherCard.getCardNumber(),
+                    outgoing ? otherCard.getCardNumber() : card.getCardNumber(),
+                    BigDecimal.valueOf(i + 1),
+                    executedAt
+            ));
+        }
+        transactions.add(new Transaction(otherCard.getCardNumber(), unrelatedCard.getCardNumber(), BigDecimal.TEN, new Date()));
+        transactionsRepository.insertAll(transactions);
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionsRepository.deleteAll();
+        cardsRepository.deleteAll();
+        usersRepository.deleteAll();
+    }
+
+    @Test
+    void getCardTransactions_returnsEveryTransactionOnceNewestFirst() {
+        List<TransactionResponse> transactions = walk(4, null, null, null);
+
+        assertEquals(TRANSACTIONS, transactions.size());
+        assertEquals(TRANSACTIONS, transactions.stream().map(TransactionResponse::getId).distinct().count());
+        for (int i = 1; i < transactions.size(); i++) {
+            TransactionResponse previous = transactions.get(i - 1);
+            TransactionResponse current = transactions.get(i);
+            int byTime = current.getExecutedAt().compareTo(previous.getExecutedAt());
+            assertTrue(byTime < 0 || (byTime == 0 && current.getId() < previous.getId()));
+        }
+    }
+
+    @Test
+    void getCardTransactions_directionFilter() {
+        List<TransactionResponse> outgoing = walk(5, TransactionDirection.OUTGOING, null, null);
+        List<TransactionResponse> incoming = walk(5, TransactionDirection.INCOMING, null, null);
+
+        assertEquals(13, outgoing.size());
+        assertEquals(12, incoming.size());
+        assertTrue(outgoing.stream().allMatch(t -> t.getDirection() == TransactionDirection.OUTGOING));
+        assertTrue(incoming.stream().allMatch(t -> t.getDirection() == TransactionDirection.INCOMING));
+        assertTrue(outgoing.stream().allMatch(t -> t.getCounterpartCardNumber().equals("**** **** **** 0002")));
+    }
+
+    @Test
+    void getCardTransactions_timeRangeFilter() {
+        // Minutes 2 to 4, three transactions each
+        List<TransactionResponse> transactions = walk(2, null, START.plusSeconds(120), START.plusSeconds(300));
+
+        assertEquals(9, transactions.size());
+    }
+
+    @Test
+    void getCardTransactions_lastPageHasNoNextCursor() {
+        PageResponse<TransactionResponse> page = cardsService.getCardTransactions(
+                card.getId(), user.getId(), TRANSACTIONS, null, null, null, "");
+
+        assertEquals(TRANSACTIONS, page.getContent().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void getCardTransactions_rejectsCursorOfOtherListing() {
+        String cursor = new PageCursor("balance", Sort.Direction.DESC, "100.00", 1).encode();
+
+        assertThrows(InvalidCursorException.class,
+                () -> cardsService.getCardTransactions(card.getId(), user.getId(), 5, null, null, null, cursor));
+    }
+
+    private List<TransactionResponse> walk(int limit, TransactionDirection direction, Instant from, Instant to) {
+        List<TransactionResponse> transactions = new ArrayList<>();
+        String cursor = "";
+        do {
+            PageResponse<TransactionResponse> page = cardsService.getCardTransactions(
+                    card.getId(), user.getId(), limit, direction, from, to, cursor);
+            assertTrue(page.getContent().size() <= limit);
+            transactions.addAll(page.getContent());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return transactions;
+    }
+
+    private Card createCard(String cardNumber) {
+        return cardsRepository.save(new Card(
+                cardNumberCrypto.encrypt(cardNumber),
+                cardNumberCrypto.hash(cardNumber),
+                CardNumberCrypto.lastFour(cardNumber),
+                user,
+                new Date(System.currentTimeMillis() + 365L * 24 * 60 * 60 * 1000),
+                CardStatus.ACTIVE,
+                new BigDecimal("100.00")
+        ));
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.TransferIdempotencyKey;
+import com.example.bankcards.exception.IdempotencyKeyException;
+import com.example.bankcards.repository.TransferIdempotencyKeysRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class IdempotencyServiceTest {
+
+    private TransferIdempotencyKeysRepository idempotencyKeysRepository;
+    private IdempotencyService idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyKeysRepository = mock(TransferIdempotencyKeysRepository.class);
+        idempotencyService = new IdempotencyService(idempotencyKeysRepository, 100, 24);
+    }
+
+    @Test
+    void fingerprint_ignoresAmountScale() {
+        String first = idempotencyService.fingerprint("hashFrom", "hashTo", new BigDecimal("100.5"));
+
+        assertEquals(first, idempotencyService.fingerprint("hashFrom", "hashTo", new BigDecimal("100.50")));
+        assertEquals(64, first.length());
+        assertNotEquals(first, idempotencyService.fingerprint("hashFrom", "hashTo", new BigDecimal("100.51")));
+        assertNotEquals(first, idempotencyService.fingerprint("hashTo", "hashFrom", new BigDecimal("100.5")));
+    }
+
+    @Test
+    void isCompleted_unknownKey() {
+        when(idempotencyKeysRepository.findByUserIdAndIdempotencyKey(1L, "key-1")).thenReturn(Optional.empty());
+
+        assertFalse(idempotencyService.isCompleted(1L, "key-1", "hash"));
+    }
+
+    @Test
+    void isCompleted_storedKeyIsCached() {
+        when(idempotencyKeysRepository.findByUserIdAndIdempotencyKey(1L, "key-1"))
+                .thenReturn(Optional.of(new TransferIdempotencyKey(1L, "key-1", "hash", new Date())));
+
+        assertTrue(idempotencyService.isCompleted(1L, "key-1", "hash"));
+        assertTrue(idempotencyService.isCompleted(1L, "key-1", "hash"));
+
+        verify(idempotencyKeysRepository, times(1)).findByUserIdAndIdempotencyKey(1L, "key-1");
+    }
+
+    @Test
+    void isCompleted_rememberedKeySkipsDatabase() {
+        idempotencyService.remember(1L, "key-1", "hash");
+
+        assertTrue(idempotencyService.isCompleted(1L, "key-1", "hash"));
+        verify(idempotencyKeysRepository, never()).findByUserIdAndIdempotencyKey(any(), any());
+    }
+
+    @Test
+    void isCompleted_keysAreScopedByUser() {
+        idempotencyService.remember(1L, "key-1", "hash");
+        when(idempotencyKeysRepository.findByUserIdAndIdempotencyKey(2L, "key-1")).thenReturn(Optional.empty());
+
+        assertFalse(idempotencyService.isCompleted(2L, "key-1", "other-hash"));
+    }
+
+    @Test
+    void isCompleted_keyReusedForDifferentRequest() {
+        idempotencyService.remember(1L, "key-1", "hash");
+
+        assertThrows(IdempotencyKeyException.class,
+                () -> idempotencyService.isCompleted(1L, "key-1", "other-hash"));
+    }
+
+    @Test
+    void isCompleted_invalidKey() {
+        assertThrows(IdempotencyKeyException.class,
+                () -> idempotencyService.isCompleted(1L, " ", "hash"));
+        assertThrows(IdempotencyKeyException.class,
+                () -> idempotencyService.isCompleted(1L, "k".repeat(65), "hash"));
+    }
+
+    @Test
+    void purgeExpired_deletesKeysOlderThanRetention() {
+        long before = System.currentTimeMillis();
+
+        idempotencyService.purgeExpired();
+
+        verify(idempotencyKeysRepository).deleteAllCreatedBefore(argThat(threshold ->
+                threshold.getTime() <= before - 24 * 60 * 60 * 1000L + 1000));
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.RefreshToken;
+import com.example.bankcards.repository.RefreshTokensRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class InMemoryRefreshTokenStoreTest {
+
+    private RefreshTokensRepository refreshTokensRepository;
+    private InMemoryRefreshTokenStore refreshTokenStore;
+
+    @BeforeEach
+    void setUp() {
+        refreshTokensRepository = mock(RefreshTokensRepository.class);
+        when(refreshTokensRepository.findAllBy(any()))
+                .thenReturn(new SliceImpl<>(List.of(new RefreshToken(1L, RefreshTokenStore.hash("stored-token"))), PageRequest.of(0, 1000), false));
+
+        refreshTokenStore = new InMemoryRefreshTokenStore(
+                refreshTokensRepository, new TransactionTemplate(mock(PlatformTransactionManager.class))
+        );
+        refreshTokenStore.load();
+    }
+
+    @Test
+    void find_loadedAtStartup() {
+        assertTrue(refreshTokenStore.matches(1L, "stored-token"));
+        assertFalse(refreshTokenStore.matches(1L, "other-token"));
+        assertFalse(refreshTokenStore.matches(2L, "stored-token"));
+    }
+
+    @Test
+    void save_visibleBeforeFlush() {
+        refreshTokenStore.save(2L, "new-token");
+
+        assertTrue(refreshTokenStore.matches(2L, "new-token"));
+        verify(refreshTokensRepository, never()).save(any());
+    }
+
+    @Test
+    void flush_updatesStoredAndInsertsNewTokens() {
+        RefreshToken stored = new RefreshToken(1L, RefreshTokenStore.hash("stored-token"));
+        when(refreshTokensRepository.findAllByUserIdIn(any())).thenReturn(List.of(stored));
+
+        refreshTokenStore.save(1L, "first");
+        refreshTokenStore.save(1L, "second");
+        refreshTokenStore.save(2L, "new-token");
+        refreshTokenStore.flush();
+
+        assertArrayEquals(RefreshTokenStore.hash("second"), stored.getRefreshTokenHash());
+        verify(refreshTokensRepository).save(argThat(token ->
+                token.getUserId().equals(2L) && Arrays.equals(token.getRefreshTokenHash(), RefreshTokenStore.hash("new-token"))));
+        verify(refreshTokensRepository, times(1)).save(any());
+
+        refreshTokenStore.flush();
+        verify(refreshTokensRepository, times(1)).findAllByUserIdIn(any());
+    }
+
+    @Test
+    void flush_failedWriteIsRetried() {
+        when(refreshTokensRepository.findAllByUserIdIn(any()))
+                .thenThrow(new IllegalStateException("Database is down"))
+                .thenReturn(List.of());
+
+        refreshTokenStore.save(2L, "new-token");
+        assertThrows(IllegalStateException.class, () -> refreshTokenStore.flush());
+        refreshTokenStore.flush();
+
+        verify(refreshTokensRepository).save(argThat(token -> Arrays.equals(token.getRefreshTokenHash(), RefreshTokenStore.hash("new-token"))));
+    }
+
+    @Test
+    void flush_rejectedTokenIsDroppedAndOthersAreWritten() {
+        when(refreshTokensRepository.findAllByUserIdIn(any())).thenReturn(List.of());
+        when(refreshTokensRepository.save(argThat(token -> token.getUserId().equals(2L))))
+                .thenThrow(new DataIntegrityViolationException("Bad row"));
+
+        refreshTokenStore.save(2L, "bad-token");
+        refreshTokenStore.save(3L, "good-token");
+        refreshTokenStore.flush();
+
+        // The rolled back batch may have saved it before, the split write saves it again
+        verify(refreshTokensRepository, atLeastOnce()).save(argThat(token ->
+                token.getUserId().equals(3L) && Arrays.equals(token.getRefreshTokenHash(), RefreshTokenStore.hash("good-token"))));
+        assertTrue(refreshTokenStore.matches(2L, "bad-token"));
+
+        clearInvocations(refreshTokensRepository);
+        refreshTokenStore.flush();
+        verify(refreshTokensRepository, never()).save(any());
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.exception.PasswordHashingBusyException;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PasswordHashingServiceTest {
+
+    @Test
+    void encodeAndMatches() {
+        PasswordHashingService service = new PasswordHashingService(new BCryptPasswordEncoder(4), 4, 1, 4);
+
+        String hash = service.encode("password");
+
+        assertTrue(service.matches("password", hash));
+        assertFalse(service.matches("wrong", hash));
+        assertFalse(service.needsRehash(hash));
+        service.shutdown();
+    }
+
+    @Test
+    void needsRehash_costChangedInEitherDirection() {
+        PasswordHashingService service = new PasswordHashingService(new BCryptPasswordEncoder(5), 5, 1, 4);
+
+        assertTrue(service.needsRehash(new BCryptPasswordEncoder(4).encode("password")));
+        assertTrue(service.needsRehash(new BCryptPasswordEncoder(6).encode("password")));
+        assertFalse(service.needsRehash(new BCryptPasswordEncoder(5).encode("password")));
+        service.shutdown();
+    }
+
+    @Test
+    void matches_queueFull_rejectsRequest() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder passwordEncoder = mock(PasswordEncoder.class);
+        when(passwordEncoder.matches("slow", "hash")).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return true;
+        });
+        when(passwordEncoder.matches("queued", "hash")).thenReturn(true);
+        // One hashing thread and one queued request
+        PasswordHashingService service = new PasswordHashingService(passwordEncoder, 10, 1, 1);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+
+        Future<Boolean> running = callers.submit(() -> service.matches("slow", "hash"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<Boolean> queued = callers.submit(() -> service.matches("queued", "hash"));
+        // Give the second request time to reach the queue
+        Thread.sleep(200);
+
+        assertThrows(PasswordHashingBusyException.class, () -> service.matches("rejected", "hash"));
+
+        release.countDown();
+        assertTrue(running.get(5, TimeUnit.SECONDS));
+        assertTrue(queued.get(5, TimeUnit.SECONDS));
+        callers.shutdown();
+        service.shutdown();
+    }
+}
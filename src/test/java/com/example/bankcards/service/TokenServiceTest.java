@@ -0,0 +1,106 @@
+package com.example.bankcards.service;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.enums.Role;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenServiceTest {
+
+    private static final String[] NO_KEYS = new String[0];
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User("token_user", "password", Role.USER);
+        user.setId(7L);
+    }
+
+    @Test
+    void validateAccessToken_success() {
+        TokenService tokenService = new TokenService("access", "refresh", "1", NO_KEYS, NO_KEYS);
+
+        DecodedJWT jwt = tokenService.validateAccessToken(tokenService.generateAccessToken(user));
+
+        assertEquals("1", jwt.getKeyId());
+        assertEquals(7L, jwt.getClaim("id").asLong());
+        assertEquals("token_user", jwt.getClaim("username").asString());
+        assertEquals("USER", jwt.getClaim("role").asString());
+    }
+
+    @Test
+    void validateToken_accessAndRefreshKeysAreSeparate() {
+        TokenService tokenService = new TokenService("access", "refresh", "1", NO_KEYS, NO_KEYS);
+
+        assertThrows(JWTVerificationException.class,
+                () -> tokenService.validateAccessToken(tokenService.generateRefreshToken(user)));
+        assertThrows(JWTVerificationException.class,
+                () -> tokenService.validateRefreshToken(tokenService.generateAccessToken(user)));
+    }
+
+    @Test
+    void validateAccessToken_retiredKeyIsAccepted() {
+        TokenService before = new TokenService("old-access", "old-refresh", "1", NO_KEYS, NO_KEYS);
+        String accessToken = before.generateAccessToken(user);
+        String refreshToken = before.generateRefreshToken(user);
+
+        TokenService after = new TokenService("new-access", "new-refresh", "2",
+                new String[]{"1:old-access"}, new String[]{"1:old-refresh"});
+
+        assertEquals(7L, after.validateAccessToken(accessToken).getClaim("id").asLong());
+        assertEquals(7L, after.validateRefreshToken(refreshToken).getClaim("id").asLong());
+        assertEquals("2", after.validateAccessToken(after.generateAccessToken(user)).getKeyId());
+    }
+
+    @Test
+    void validateAccessToken_droppedKeyIsRejected() {
+        TokenService before = new TokenService("old-access", "old-refresh", "1", NO_KEYS, NO_KEYS);
+        String accessToken = before.generateAccessToken(user);
+
+        TokenService after = new TokenService("new-access", "new-refresh", "2", NO_KEYS, NO_KEYS);
+
+        assertThrows(JWTVerificationException.class, () -> after.validateAccessToken(accessToken));
+    }
+
+    @Test
+    void validateAccessToken_tokenWithoutKeyIdUsesActiveKey() {
+        TokenService tokenService = new TokenService("access", "refresh", "1", NO_KEYS, NO_KEYS);
+        String token = JWT.create()
+                .withSubject("Bank details")
+                .withIssuer("bank-service")
+                .withClaim("id", 7L)
+                .sign(Algorithm.HMAC256("access"));
+
+        assertEquals(7L, tokenService.validateAccessToken(token).getClaim("id").asLong());
+    }
+
+    @Test
+    void validateAccessToken_tamperedOrMalformedToken() {
+        TokenService tokenService = new TokenService("access", "refresh", "1", NO_KEYS, NO_KEYS);
+        String token = tokenService.generateAccessToken(user);
+        String forged = JWT.create()
+                .withKeyId("1")
+                .withSubject("Bank details")
+                .withIssuer("bank-service")
+                .sign(Algorithm.HMAC256("other"));
+
+        assertThrows(JWTVerificationException.class, () -> tokenService.validateAccessToken(forged));
+        assertThrows(JWTVerificationException.class, () -> tokenService.validateAccessToken(token.substring(1)));
+        assertThrows(JWTVerificationException.class, () -> tokenService.validateAccessToken("not a token"));
+    }
+
+    @Test
+    void tokenService_invalidRetiredKey() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new TokenService("access", "refresh", "1", new String[]{"secret-without-id"}, NO_KEYS));
+        assertThrows(IllegalArgumentException.class,
+                () -> new TokenService("access", "refresh", "1", new String[]{"1:duplicate"}, NO_KEYS));
+    }
+}
@@ -0,0 +1,314 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransactionRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.enums.CardStatus;
+import com.example.bankcards.enums.Role;
+import com.example.bankcards.exception.CardInsufficientFunds;
+import com.example.bankcards.repository.CardBalanceSlotsRepository;
+import com.example.bankcards.repository.CardsRepository;
+import com.example.bankcards.repository.TransactionsRepository;
+import com.example.bankcards.repository.UsersRepository;
+import com.example.bankcards.util.CardNumberCrypto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Multi-threaded stress test of {@link TransactionsService#transfer} against an in-memory database.
+ * Transfers run in both directions over a small set of cards, which deadlocks unless the rows
+ * are always locked in the same order, and loses updates unless they are locked at all.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles({"development", "h2"})
+class TransactionsServiceConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 100;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000.00");
+
+    @Autowired
+    private TransactionsService transactionsService;
+
+    @Autowired
+    private CardsRepository cardsRepository;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @Autowired
+    private TransactionsRepository transactionsRepository;
+
+    @Autowired
+    private CardBalanceSlotsRepository cardBalanceSlotsRepository;
+
+    @Autowired
+    private AdminCardsService adminCardsService;
+
+    @Autowired
+    private CardBalanceService cardBalanceService;
+
+    @Autowired
+    private CardNumberCrypto cardNumberCrypto;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = usersRepository.save(new User("stress_user", "password", Role.USER));
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionsRepository.deleteAll();
+        cardBalanceSlotsRepository.deleteAll();
+        cardsRepository.deleteAll();
+        usersRepository.deleteAll();
+    }
+
+    @Test
+    void transfer_contendedCards_conservesBalances() throws Exception {
+        List<String> cardNumbers = createCards(4);
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        runConcurrently(THREADS, thread -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                int from = random.nextInt(cardNumbers.size());
+                int to = (from + 1 + random.nextInt(cardNumbers.size() - 1)) % cardNumbers.size();
+                try {
+                    transactionsService.transfer(
+                            request(cardNumbers.get(from), cardNumbers.get(to), random.nextInt(1, 100)),
+                            user.getId()
+                    );
+                    completed.incrementAndGet();
+                } catch (CardInsufficientFunds e) {
+                    rejected.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(THREADS * TRANSFERS_PER_THREAD, completed.get() + rejected.get());
+        assertEquals(completed.get(), transactionsRepository.count());
+        assertEquals(INITIAL_BALANCE.multiply(BigDecimal.valueOf(cardNumbers.size())), totalBalance());
+        cardsRepository.findAll().forEach(card -> assertTrue(card.getBalance().signum() >= 0));
+    }
+
+    @Test
+    void transfer_opposingDirections_doNotDeadlock() throws Exception {
+        List<String> cardNumbers = createCards(2);
+
+        runConcurrently(THREADS, thread -> {
+            String from = cardNumbers.get(thread % 2);
+            String to = cardNumbers.get((thread + 1) % 2);
+            for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                transactionsService.transfer(request(from, to, 1), user.getId());
+            }
+        });
+
+        assertEquals(THREADS * TRANSFERS_PER_THREAD, transactionsRepository.count());
+        assertEquals(INITIAL_BALANCE.multiply(BigDecimal.valueOf(2)), totalBalance());
+    }
+
+    @Test
+    void transferBatch_concurrentWithSingleTransfers_conservesBalances() throws Exception {
+        List<String> cardNumbers = createCards(4);
+
+        runConcurrently(THREADS, thread -> {
+            for (int i = 0; i < TRANSFERS_PER_THREAD / 10; i++) {
+                if (thread % 2 == 0) {
+                    List<TransactionRequest> batch = new ArrayList<>();
+                    for (int j = 0; j < 10; j++) {
+                        batch.add(request(cardNumbers.get(j % 4), cardNumbers.get((j + 1) % 4), 1));
+                    }
+                    transactionsService.transferBatch(batch, user.getId());
+                } else {
+                    transactionsService.transfer(request(cardNumbers.get(3), cardNumbers.get(0), 1), user.getId());
+                }
+            }
+        });
+
+        long expectedRows = (THREADS / 2) * (TRANSFERS_PER_THREAD / 10) * 11L;
+        assertEquals(expectedRows, transactionsRepository.count());
+        assertEquals(INITIAL_BALANCE.multiply(BigDecimal.valueOf(cardNumbers.size())), totalBalance());
+    }
+
+    @Test
+    void transfer_shardedHotCard_conservesBalances() throws Exception {
+        List<String> cardNumbers = createCards(THREADS + 1);
+        String hotCard = cardNumbers.get(THREADS);
+        Card hot = cardsRepository.findByCardNumberHash(cardNumberCrypto.hash(hotCard)).orElseThrow();
+        adminCardsService.setBalanceSlots(hot.getId(), 4);
+
+        runConcurrently(THREADS, thread -> {
+            String card = cardNumbers.get(thread);
+            for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                // Every fourth transfer goes back from the hot card, so debits race with credits on the slots
+                if (i % 4 == 3) {
+                    transactionsService.transfer(request(hotCard, card, 3), user.getId());
+                } else {
+                    transactionsService.transfer(request(card, hotCard, 1), user.getId());
+                }
+            }
+        });
+
+        assertEquals(THREADS * TRANSFERS_PER_THREAD, transactionsRepository.count());
+        assertEquals(INITIAL_BALANCE.multiply(BigDecimal.valueOf(cardNumbers.size())), totalBalance());
+        assertEquals(4, cardBalanceSlotsRepository.count());
+        cardBalanceSlotsRepository.findAll().forEach(slot -> assertTrue(slot.getBalance().signum() >= 0));
+
+        adminCardsService.setBalanceSlots(hot.getId(), 0);
+        assertEquals(0, cardBalanceSlotsRepository.count());
+        assertEquals(INITIAL_BALANCE.multiply(BigDecimal.valueOf(cardNumbers.size())), totalBalance());
+    }
+
+    @Test
+    void transfer_shardedCardsOpposingDirections_doNotDeadlock() throws Exception {
+        List<String> cardNumbers = createCards(2);
+        for (String cardNumber : cardNumbers) {
+            Card card = cardsRepository.findByCardNumberHash(cardNumberCrypto.hash(cardNumber)).orElseThrow();
+            adminCardsService.setBalanceSlots(card.getId(), 2);
+        }
+
+        // Both cards are debited and credited on random slots, so every transaction writes two slot rows
+        runConcurrently(THREADS, thread -> {
+            String from = cardNumbers.get(thread % 2);
+            String to = cardNumbers.get((thread + 1) % 2);
+            for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                transactionsService.transfer(request(from, to, 1), user.getId());
+            }
+        });
+
+        assertEquals(THREADS * TRANSFERS_PER_THREAD, transactionsRepository.count());
+        assertEquals(INITIAL_BALANCE.multiply(BigDecimal.valueOf(2)), totalBalance());
+    }
+
+    @Test
+    void transferBatch_shardedCardSeveralTimesPerBatch_doesNotDeadlock() throws Exception {
+        List<String> cardNumbers = createCards(THREADS + 1);
+        String hotCard = cardNumbers.get(THREADS);
+        Card hot = cardsRepository.findByCardNumberHash(cardNumberCrypto.hash(hotCard)).orElseThrow();
+        adminCardsService.setBalanceSlots(hot.getId(), 4);
+
+        // Every batch credits the hot card several times and pays out of it to several cards, like a payroll
+        runConcurrently(THREADS, thread -> {
+            for (int i = 0; i < TRANSFERS_PER_THREAD / 10; i++) {
+                List<TransactionRequest> batch = new ArrayList<>();
+                for (int j = 0; j < 5; j++) {
+                    String card = cardNumbers.get((thread + j) % THREADS);
+                    batch.add(request(card, hotCard, 2));
+                    batch.add(request(hotCard, card, 1));
+                }
+                transactionsService.transferBatch(batch, user.getId());
+            }
+        });
+
+        assertEquals(THREADS * (TRANSFERS_PER_THREAD / 10) * 10L, transactionsRepository.count());
+        assertEquals(INITIAL_BALANCE.multiply(BigDecimal.valueOf(cardNumbers.size())), totalBalance());
+        cardBalanceSlotsRepository.findAll().forEach(slot -> assertTrue(slot.getBalance().signum() >= 0));
+    }
+
+    @Test
+    void transfer_disjointCards_throughputHoldsUnderConcurrency() throws Exception {
+        List<String> cardNumbers = createCards(THREADS * 2);
+        // Warm up the JIT and the connection pool so the single-threaded run is not measured cold
+        measureThroughput(THREADS, cardNumbers);
+
+        double singleThreaded = measureThroughput(1, cardNumbers);
+        double multiThreaded = measureThroughput(THREADS, cardNumbers);
+
+        // Transfers over disjoint cards share no row locks, so running them concurrently must not
+        // serialize them behind each other. The bound is deliberately loose: on a single-core runner
+        // the threads cannot scale, but they still must not fall far below the single-threaded rate.
+        assertTrue(multiThreaded >= singleThreaded / 2,
+                String.format("%d threads ran %.0f transfers/s, 1 thread ran %.0f transfers/s",
+                        THREADS, multiThreaded, singleThreaded));
+        assertEquals(INITIAL_BALANCE.multiply(BigDecimal.valueOf(cardNumbers.size())), totalBalance());
+    }
+
+    private double measureThroughput(int threads, List<String> cardNumbers) throws Exception {
+        long start = System.nanoTime();
+        runConcurrently(threads, thread -> {
+            String from = cardNumbers.get(thread * 2);
+            String to = cardNumbers.get(thread * 2 + 1);
+            for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                transactionsService.transfer(request(i % 2 == 0 ? from : to, i % 2 == 0 ? to : from, 1), user.getId());
+            }
+        });
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        return threads * TRANSFERS_PER_THREAD / seconds;
+    }
+
+    private void runConcurrently(int threads, ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            int index = thread;
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.run(index);
+                return null;
+            }));
+        }
+        start.countDown();
+        try {
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<String> createCards(int count) {
+        List<String> cardNumbers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String cardNumber = String.format("4000%012d", i);
+            cardsRepository.save(new Card(
+                    cardNumberCrypto.encrypt(cardNumber),
+                    cardNumberCrypto.hash(cardNumber),
+                    CardNumberCrypto.lastFour(cardNumber),
+                    user,
+                    new Date(),
+                    CardStatus.ACTIVE,
+                    INITIAL_BALANCE
+            ));
+            cardNumbers.add(cardNumber);
+        }
+        return cardNumbers;
+    }
+
+    private BigDecimal totalBalance() {
+        return cardsRepository.findAll().stream()
+                .map(cardBalanceService::getBalance)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private TransactionRequest request(String fromCard, String toCard, int amount) {
+        TransactionRequest request = new TransactionRequest();
+        request.setFromCard(fromCard);
+        request.setToCard(toCard);
+        request.setAmount(BigDecimal.valueOf(amount).setScale(2));
+        return request;
+    }
+
+    @FunctionalInterface
+    private interface ThreadTask {
+        void run(int thread) throws Exception;
+    }
+}
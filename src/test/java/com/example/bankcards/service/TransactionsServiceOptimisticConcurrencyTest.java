@@ -0,0 +1,147 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransactionRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.enums.CardStatus;
+import com.example.bankcards.enums.Role;
+import com.example.bankcards.exception.CardInsufficientFunds;
+import com.example.bankcards.exception.TransferConflictException;
+import com.example.bankcards.repository.CardsRepository;
+import com.example.bankcards.repository.TransactionsRepository;
+import com.example.bankcards.repository.UsersRepository;
+import com.example.bankcards.util.CardNumberCrypto;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs contended transfers in {@code OPTIMISTIC} mode and checks that version conflicts are retried
+ * or aborted, but never lose an update.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {
+                "spring.transactions.transfer.mode=OPTIMISTIC",
+                "spring.datasource.url=jdbc:h2:mem:bankrest_optimistic;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE"
+        }
+)
+@ActiveProfiles({"development", "h2"})
+class TransactionsServiceOptimisticConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 100;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000.00");
+
+    @Autowired
+    private TransactionsService transactionsService;
+
+    @Autowired
+    private CardsRepository cardsRepository;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @Autowired
+    private TransactionsRepository transactionsRepository;
+
+    @Autowired
+    private CardNumberCrypto cardNumberCrypto;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${spring.transactions.transfer.max-attempts}")
+    private int maxAttempts;
+
+    @AfterEach
+    void tearDown() {
+        transactionsRepository.deleteAll();
+        cardsRepository.deleteAll();
+        usersRepository.deleteAll();
+    }
+
+    @Test
+    void transfer_contendedCards_conservesBalances() throws Exception {
+        User user = usersRepository.save(new User("optimistic_user", "password", Role.USER));
+        List<String> cardNumbers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            String cardNumber = String.format("5000%012d", i);
+            cardsRepository.save(new Card(
+                    cardNumberCrypto.encrypt(cardNumber),
+                    cardNumberCrypto.hash(cardNumber),
+                    CardNumberCrypto.lastFour(cardNumber),
+                    user,
+                    new Date(),
+                    CardStatus.ACTIVE,
+                    INITIAL_BALANCE
+            ));
+            cardNumbers.add(cardNumber);
+        }
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger aborted = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    int from = random.nextInt(cardNumbers.size());
+                    int to = (from + 1 + random.nextInt(cardNumbers.size() - 1)) % cardNumbers.size();
+                    TransactionRequest request = new TransactionRequest();
+                    request.setFromCard(cardNumbers.get(from));
+                    request.setToCard(cardNumbers.get(to));
+                    request.setAmount(BigDecimal.valueOf(random.nextInt(1, 100)).setScale(2));
+                    try {
+                        transactionsService.transfer(request, user.getId());
+                        completed.incrementAndGet();
+                    } catch (CardInsufficientFunds e) {
+                        rejected.incrementAndGet();
+                    } catch (TransferConflictException e) {
+                        aborted.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        BigDecimal total = cardsRepository.findAll().stream()
+                .map(Card::getBalance)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        double retries = meterRegistry.counter("bank.transfers.retries", "mode", "optimistic").count();
+
+        assertEquals(THREADS * TRANSFERS_PER_THREAD, completed.get() + rejected.get() + aborted.get());
+        // Eight threads over eight cards collide on versions, and every collision is either retried or aborted
+        assertTrue(retries > 0, "contended transfers were never retried");
+        // An aborted transfer has used up all of its attempts
+        assertTrue(retries >= (double) aborted.get() * (maxAttempts - 1),
+                String.format("%.0f retries for %d aborted transfers", retries, aborted.get()));
+        assertEquals(completed.get(),
+                meterRegistry.counter("bank.transfers", "mode", "optimistic", "outcome", "completed").count());
+        assertEquals(aborted.get(),
+                meterRegistry.counter("bank.transfers", "mode", "optimistic", "outcome", "aborted").count());
+        assertEquals(completed.get(), transactionsRepository.count());
+        assertEquals(INITIAL_BALANCE.multiply(BigDecimal.valueOf(cardNumbers.size())), total);
+    }
+}
@@ -1,19 +1,38 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.BatchTransactionResponse;
 import com.example.bankcards.dto.TransactionRequest;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.enums.TransferMode;
+import com.example.bankcards.enums.TransferStatus;
 import com.example.bankcards.exception.*;
+import com.example.bankcards.jfr.TransferEvent;
+import com.example.bankcards.repository.CardBalanceSlotsRepository;
 import com.example.bankcards.repository.CardsRepository;
 import com.example.bankcards.repository.TransactionsRepository;
 import com.example.bankcards.util.CardNumberCrypto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
-import java.util.Optional;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -30,7 +49,17 @@ class TransactionsServiceTest {
     @Mock
     private TransactionsRepository transactionsRepository;
 
-    @InjectMocks
+    @Mock
+    private CardBalanceSlotsRepository cardBalanceSlotsRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private IdempotencyService idempotencyService;
+
+    private MeterRegistry meterRegistry;
+
     private TransactionsService transactionsService;
 
     private Card fromCard;
@@ -40,6 +69,8 @@ class TransactionsServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        transactionsService = createService(TransferMode.PESSIMISTIC);
 
         user = new User();
         user.setId(1L);
@@ -48,12 +79,14 @@ class TransactionsServiceTest {
         fromCard = new Card();
         fromCard.setId(1L);
         fromCard.setCardNumber("encryptedFrom");
+        fromCard.setCardNumberHash("hashFrom");
         fromCard.setOwner(user);
         fromCard.setBalance(new BigDecimal("100.00"));
 
         toCard = new Card();
         toCard.setId(2L);
         toCard.setCardNumber("encryptedTo");
+        toCard.setCardNumberHash("hashTo");
         toCard.setOwner(user);
         toCard.setBalance(new BigDecimal("50.00"));
     }
@@ -65,16 +98,50 @@ class TransactionsServiceTest {
         request.setToCard("2222");
         request.setAmount(new BigDecimal("30.00"));
 
-        when(cardNumberCrypto.encrypt("1111")).thenReturn("encryptedFrom");
-        when(cardNumberCrypto.encrypt("2222")).thenReturn("encryptedTo");
-        when(cardsRepository.findByCardNumber("encryptedFrom")).thenReturn(Optional.of(fromCard));
-        when(cardsRepository.findByCardNumber("encryptedTo")).thenReturn(Optional.of(toCard));
+        when(cardNumberCrypto.hash("1111")).thenReturn("hashFrom");
+        when(cardNumberCrypto.hash("2222")).thenReturn("hashTo");
+        when(cardsRepository.findAllForUpdateByCardNumberHashIn(List.of("hashFrom", "hashTo")))
+                .thenReturn(List.of(fromCard, toCard));
 
         transactionsService.transfer(request, 1L);
 
         assertEquals(new BigDecimal("70.00"), fromCard.getBalance());
         assertEquals(new BigDecimal("80.00"), toCard.getBalance());
         verify(transactionsRepository).save(any(Transaction.class));
+        verify(cardsRepository, never()).findByCardNumberHash(anyString());
+    }
+
+    @Test
+    void transfer_recordsJfrEvent() throws Exception {
+        TransactionRequest request = new TransactionRequest();
+        request.setFromCard("1111");
+        request.setToCard("2222");
+        request.setAmount(new BigDecimal("30.00"));
+
+        when(cardNumberCrypto.hash("1111")).thenReturn("hashFrom");
+        when(cardNumberCrypto.hash("2222")).thenReturn("hashTo");
+        when(cardsRepository.findAllForUpdateByCardNumberHashIn(List.of("hashFrom", "hashTo")))
+                .thenReturn(List.of(fromCard, toCard));
+
+        Path file = Files.createTempFile("transfer", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(TransferEvent.NAME);
+            recording.start();
+            transactionsService.transfer(request, 1L);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+        assertEquals(1, events.size());
+        RecordedEvent event = events.get(0);
+        assertEquals(1L, event.getLong("fromCardId"));
+        assertEquals(2L, event.getLong("toCardId"));
+        assertEquals("10-100", event.getString("amountBucket"));
+        assertEquals("PESSIMISTIC", event.getString("mode"));
+        assertEquals(1, event.getInt("attempts"));
+        assertEquals("completed", event.getString("outcome"));
     }
 
     @Test
@@ -84,12 +151,12 @@ class TransactionsServiceTest {
         request.setToCard("2222");
         request.setAmount(new BigDecimal("150.00"));
 
-        when(cardNumberCrypto.encrypt(anyString())).thenAnswer(invocation -> {
+        when(cardNumberCrypto.hash(anyString())).thenAnswer(invocation -> {
             String arg = invocation.getArgument(0);
-            return arg.equals("1111") ? "encryptedFrom" : "encryptedTo";
+            return arg.equals("1111") ? "hashFrom" : "hashTo";
         });
-        when(cardsRepository.findByCardNumber("encryptedFrom")).thenReturn(Optional.of(fromCard));
-        when(cardsRepository.findByCardNumber("encryptedTo")).thenReturn(Optional.of(toCard));
+        when(cardsRepository.findAllForUpdateByCardNumberHashIn(List.of("hashFrom", "hashTo")))
+                .thenReturn(List.of(fromCard, toCard));
 
         assertThrows(CardInsufficientFunds.class,
                 () -> transactionsService.transfer(request, 1L));
@@ -124,8 +191,10 @@ class TransactionsServiceTest {
         request.setToCard("2222");
         request.setAmount(new BigDecimal("10.00"));
 
-        when(cardNumberCrypto.encrypt(anyString())).thenReturn("encryptedFrom");
-        when(cardsRepository.findByCardNumber("encryptedFrom")).thenReturn(Optional.empty());
+        when(cardNumberCrypto.hash("1111")).thenReturn("hashFrom");
+        when(cardNumberCrypto.hash("2222")).thenReturn("hashTo");
+        when(cardsRepository.findAllForUpdateByCardNumberHashIn(List.of("hashFrom", "hashTo")))
+                .thenReturn(List.of(toCard));
 
         assertThrows(CardNotFoundException.class,
                 () -> transactionsService.transfer(request, 1L));
@@ -142,9 +211,10 @@ class TransactionsServiceTest {
         otherUser.setId(99L);
         fromCard.setOwner(otherUser);
 
-        when(cardNumberCrypto.encrypt(anyString())).thenReturn("encryptedFrom");
-        when(cardsRepository.findByCardNumber("encryptedFrom")).thenReturn(Optional.of(fromCard));
-        when(cardsRepository.findByCardNumber("encryptedTo")).thenReturn(Optional.of(toCard));
+        when(cardNumberCrypto.hash("1111")).thenReturn("hashFrom");
+        when(cardNumberCrypto.hash("2222")).thenReturn("hashTo");
+        when(cardsRepository.findAllForUpdateByCardNumberHashIn(List.of("hashFrom", "hashTo")))
+                .thenReturn(List.of(fromCard, toCard));
 
         assertThrows(NoAuthorityException.class,
                 () -> transactionsService.transfer(request, 1L));
@@ -157,10 +227,264 @@ class TransactionsServiceTest {
         request.setToCard("1111");
         request.setAmount(new BigDecimal("10.00"));
 
-        when(cardNumberCrypto.encrypt("1111")).thenReturn("encryptedFrom");
-        when(cardsRepository.findByCardNumber("encryptedFrom")).thenReturn(Optional.of(fromCard));
+        when(cardNumberCrypto.hash("1111")).thenReturn("hashFrom");
+        when(cardsRepository.findAllForUpdateByCardNumberHashIn(List.of("hashFrom", "hashFrom")))
+                .thenReturn(List.of(fromCard));
 
         assertThrows(SameCardTransactionException.class,
                 () -> transactionsService.transfer(request, 1L));
     }
+
+    @Test
+    void transfer_optimistic_readsCardsWithoutLocking() {
+        transactionsService = createService(TransferMode.OPTIMISTIC);
+        TransactionRequest request = new TransactionRequest();
+        request.setFromCard("1111");
+        request.setToCard("2222");
+        request.setAmount(new BigDecimal("30.00"));
+
+        when(cardNumberCrypto.hash("1111")).thenReturn("hashFrom");
+        when(cardNumberCrypto.hash("2222")).thenReturn("hashTo");
+        when(cardsRepository.findAllByCardNumberHashIn(List.of("hashFrom", "hashTo")))
+                .thenReturn(List.of(fromCard, toCard));
+
+        transactionsService.transfer(request, 1L);
+
+        assertEquals(new BigDecimal("70.00"), fromCard.getBalance());
+        assertEquals(new BigDecimal("80.00"), toCard.getBalance());
+        verify(cardsRepository, never()).findAllForUpdateByCardNumberHashIn(anyCollection());
+        assertEquals(1.0, meterRegistry.counter("bank.transfers", "mode", "optimistic", "outcome", "completed").count());
+    }
+
+    @Test
+    void transfer_optimistic_retriesVersionConflict() {
+        transactionsService = createService(TransferMode.OPTIMISTIC);
+        TransactionRequest request = new TransactionRequest();
+        request.setFromCard("1111");
+        request.setToCard("2222");
+        request.setAmount(new BigDecimal("30.00"));
+
+        when(cardNumberCrypto.hash("1111")).thenReturn("hashFrom");
+        when(cardNumberCrypto.hash("2222")).thenReturn("hashTo");
+        when(cardsRepository.findAllByCardNumberHashIn(List.of("hashFrom", "hashTo")))
+                .thenReturn(List.of(fromCard, toCard));
+        doThrow(new ObjectOptimisticLockingFailureException(Card.class, 1L))
+                .doNothing()
+                .when(transactionManager).commit(any());
+
+        transactionsService.transfer(request, 1L);
+
+        verify(cardsRepository, times(2)).findAllByCardNumberHashIn(anyCollection());
+        assertEquals(1.0, meterRegistry.counter("bank.transfers.retries", "mode", "optimistic").count());
+        assertEquals(1.0, meterRegistry.counter("bank.transfers", "mode", "optimistic", "outcome", "completed").count());
+    }
+
+    @Test
+    void transfer_slotsResetWhileLocking_retriesWithWriteLock() {
+        TransactionRequest request = new TransactionRequest();
+        request.setFromCard("1111");
+        request.setToCard("2222");
+        request.setAmount(new BigDecimal("30.00"));
+
+        when(cardNumberCrypto.hash("1111")).thenReturn("hashFrom");
+        when(cardNumberCrypto.hash("2222")).thenReturn("hashTo");
+        // The first attempt sees the destination card still sharded, its shared lock then finds 0 slots
+        when(cardsRepository.findAllForUpdateByCardNumberHashIn(List.of("hashFrom", "hashTo")))
+                .thenReturn(List.of(fromCard))
+                .thenReturn(List.of(fromCard, toCard));
+        when(cardsRepository.findAllForShareByCardNumberHashIn(Set.of("hashTo"))).thenReturn(List.of(toCard));
+
+        transactionsService.transfer(request, 1L);
+
+        assertEquals(new BigDecimal("70.00"), fromCard.getBalance());
+        assertEquals(new BigDecimal("80.00"), toCard.getBalance());
+        verify(transactionManager).rollback(any());
+        assertEquals(1.0, meterRegistry.counter("bank.transfers.retries", "mode", "pessimistic").count());
+        assertEquals(1.0, meterRegistry.counter("bank.transfers", "mode", "pessimistic", "outcome", "completed").count());
+    }
+
+    @Test
+    void transfer_optimistic_abortsAfterMaxAttempts() {
+        transactionsService = createService(TransferMode.OPTIMISTIC);
+        TransactionRequest request = new TransactionRequest();
+        request.setFromCard("1111");
+        request.setToCard("2222");
+        request.setAmount(new BigDecimal("30.00"));
+
+        when(cardNumberCrypto.hash("1111")).thenReturn("hashFrom");
+        when(cardNumberCrypto.hash("2222")).thenReturn("hashTo");
+        when(cardsRepository.findAllByCardNumberHashIn(List.of("hashFrom", "hashTo")))
+                .thenReturn(List.of(fromCard, toCard));
+        doThrow(new ObjectOptimisticLockingFailureException(Card.class, 1L))
+                .when(transactionManager).commit(any());
+
+        assertThrows(TransferConflictException.class,
+                () -> transactionsService.transfer(request, 1L));
+        verify(cardsRepository, times(3)).findAllByCardNumberHashIn(anyCollection());
+        assertEquals(2.0, meterRegistry.counter("bank.transfers.retries", "mode", "optimistic").count());
+        assertEquals(1.0, meterRegistry.counter("bank.transfers", "mode", "optimistic", "outcome", "aborted").count());
+    }
+
+    @Test
+    void transferBatch_locksAllCardsOnceAndReportsEachItem() {
+        TransactionRequest first = new TransactionRequest();
+        first.setFromCard("1111");
+        first.setToCard("2222");
+        first.setAmount(new BigDecimal("60.00"));
+        TransactionRequest second = new TransactionRequest();
+        second.setFromCard("1111");
+        second.setToCard("2222");
+        second.setAmount(new BigDecimal("60.00"));
+        TransactionRequest third = new TransactionRequest();
+        third.setFromCard("2222");
+        third.setToCard("1111");
+        third.setAmount(new BigDecimal("10.00"));
+
+        when(cardNumberCrypto.hash("1111")).thenReturn("hashFrom");
+        when(cardNumberCrypto.hash("2222")).thenReturn("hashTo");
+        when(cardsRepository.findAllForUpdateByCardNumberHashIn(anyCollection()))
+                .thenReturn(List.of(fromCard, toCard));
+
+        BatchTransactionResponse response = transactionsService.transferBatch(List.of(first, second, third), 1L);
+
+        assertEquals(2, response.getCompleted());
+        assertEquals(1, response.getFailed());
+        assertEquals(TransferStatus.COMPLETED, response.getResults().get(0).getStatus());
+        assertEquals(TransferStatus.FAILED, response.getResults().get(1).getStatus());
+        assertEquals("Insufficient funds", response.getResults().get(1).getError());
+        assertEquals(TransferStatus.COMPLETED, response.getResults().get(2).getStatus());
+        assertEquals(new BigDecimal("50.00"), fromCard.getBalance());
+        assertEquals(new BigDecimal("100.00"), toCard.getBalance());
+        verify(cardNumberCrypto, times(1)).hash("1111");
+        verify(cardsRepository, times(1)).findAllForUpdateByCardNumberHashIn(anyCollection());
+        verify(transactionsRepository).insertAll(argThat(transactions -> transactions.size() == 2));
+        verify(transactionsRepository, never()).save(any(Transaction.class));
+    }
+
+    @Test
+    void transfer_withIdempotencyKey_recordsKeyAndRemembersIt() {
+        TransactionRequest request = new TransactionRequest();
+        request.setFromCard("1111");
+        request.setToCard("2222");
+        request.setAmount(new BigDecimal("30.00"));
+
+        when(cardNumberCrypto.hash("1111")).thenReturn("hashFrom");
+        when(cardNumberCrypto.hash("2222")).thenReturn("hashTo");
+        when(idempotencyService.fingerprint("hashFrom", "hashTo", new BigDecimal("30.00"))).thenReturn("hash");
+        when(idempotencyService.isCompleted(1L, "key-1", "hash")).thenReturn(false);
+        when(cardsRepository.findAllForUpdateByCardNumberHashIn(List.of("hashFrom", "hashTo")))
+                .thenReturn(List.of(fromCard, toCard));
+
+        assertTrue(transactionsService.transfer(request, 1L, "key-1"));
+
+        assertEquals(new BigDecimal("70.00"), fromCard.getBalance());
+        verify(idempotencyService).record(1L, "key-1", "hash");
+        verify(idempotencyService).remember(1L, "key-1", "hash");
+    }
+
+    @Test
+    void transfer_withCompletedIdempotencyKey_isNotExecutedAgain() {
+        TransactionRequest request = new TransactionRequest();
+        request.setFromCard("1111");
+        request.setToCard("2222");
+        request.setAmount(new BigDecimal("30.00"));
+
+        when(cardNumberCrypto.hash("1111")).thenReturn("hashFrom");
+        when(cardNumberCrypto.hash("2222")).thenReturn("hashTo");
+        when(idempotencyService.fingerprint("hashFrom", "hashTo", new BigDecimal("30.00"))).thenReturn("hash");
+        when(idempotencyService.isCompleted(1L, "key-1", "hash")).thenReturn(true);
+
+        assertFalse(transactionsService.transfer(request, 1L, "key-1"));
+
+        assertEquals(new BigDecimal("100.00"), fromCard.getBalance());
+        verify(cardsRepository, never()).findAllForUpdateByCardNumberHashIn(anyCollection());
+        verify(idempotencyService, never()).record(anyLong(), anyString(), anyString());
+        assertEquals(1, meterRegistry.get("bank.transfers").tag("outcome", "replayed").counter().count());
+    }
+
+    @Test
+    void transfer_concurrentDuplicateIdempotencyKey_isReplay() {
+        TransactionRequest request = new TransactionRequest();
+        request.setFromCard("1111");
+        request.setToCard("2222");
+        request.setAmount(new BigDecimal("30.00"));
+
+        when(cardNumberCrypto.hash("1111")).thenReturn("hashFrom");
+        when(cardNumberCrypto.hash("2222")).thenReturn("hashTo");
+        when(idempotencyService.fingerprint("hashFrom", "hashTo", new BigDecimal("30.00"))).thenReturn("hash");
+        when(idempotencyService.isCompleted(1L, "key-1", "hash")).thenReturn(false, true);
+        doThrow(new DataIntegrityViolationException("duplicate key"))
+                .when(idempotencyService).record(1L, "key-1", "hash");
+
+        assertFalse(transactionsService.transfer(request, 1L, "key-1"));
+
+        verify(cardsRepository, never()).findAllForUpdateByCardNumberHashIn(anyCollection());
+        verify(idempotencyService, never()).remember(anyLong(), anyString(), anyString());
+    }
+
+    @Test
+    void transfer_toShardedCard_creditsSlotWithoutLockingCardRow() {
+        TransactionRequest request = new TransactionRequest();
+        request.setFromCard("1111");
+        request.setToCard("2222");
+        request.setAmount(new BigDecimal("30.00"));
+
+        toCard.setBalance(BigDecimal.ZERO);
+        toCard.setBalanceSlots(4);
+        when(cardNumberCrypto.hash("1111")).thenReturn("hashFrom");
+        when(cardNumberCrypto.hash("2222")).thenReturn("hashTo");
+        when(cardsRepository.findAllForUpdateByCardNumberHashIn(List.of("hashFrom", "hashTo")))
+                .thenReturn(List.of(fromCard));
+        when(cardsRepository.findAllForShareByCardNumberHashIn(Set.of("hashTo"))).thenReturn(List.of(toCard));
+        when(cardBalanceSlotsRepository.credit(eq(2L), anyInt(), eq(new BigDecimal("30.00")))).thenReturn(true);
+
+        transactionsService.transfer(request, 1L);
+
+        assertEquals(new BigDecimal("70.00"), fromCard.getBalance());
+        assertEquals(BigDecimal.ZERO, toCard.getBalance());
+        verify(cardBalanceSlotsRepository).credit(eq(2L), intThat(slot -> slot >= 0 && slot < 4), eq(new BigDecimal("30.00")));
+        verify(transactionsRepository).save(any(Transaction.class));
+    }
+
+    @Test
+    void transfer_deadlockVictim_isRetried() {
+        TransactionRequest request = new TransactionRequest();
+        request.setFromCard("1111");
+        request.setToCard("2222");
+        request.setAmount(new BigDecimal("30.00"));
+
+        toCard.setBalance(BigDecimal.ZERO);
+        toCard.setBalanceSlots(4);
+        when(cardNumberCrypto.hash("1111")).thenReturn("hashFrom");
+        when(cardNumberCrypto.hash("2222")).thenReturn("hashTo");
+        when(cardsRepository.findAllForUpdateByCardNumberHashIn(List.of("hashFrom", "hashTo")))
+                .thenReturn(List.of(fromCard));
+        when(cardsRepository.findAllForShareByCardNumberHashIn(Set.of("hashTo"))).thenReturn(List.of(toCard));
+        when(cardBalanceSlotsRepository.credit(eq(2L), anyInt(), eq(new BigDecimal("30.00"))))
+                .thenThrow(new CannotAcquireLockException("deadlock detected"))
+                .thenReturn(true);
+
+        transactionsService.transfer(request, 1L);
+
+        verify(transactionManager).rollback(any());
+        verify(cardBalanceSlotsRepository, times(2)).credit(eq(2L), anyInt(), eq(new BigDecimal("30.00")));
+        assertEquals(1.0, meterRegistry.counter("bank.transfers.retries", "mode", "pessimistic").count());
+        assertEquals(1.0, meterRegistry.counter("bank.transfers", "mode", "pessimistic", "outcome", "completed").count());
+    }
+
+    private TransactionsService createService(TransferMode transferMode) {
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+        return new TransactionsService(
+                cardNumberCrypto,
+                cardsRepository,
+                transactionsRepository,
+                new CardBalanceService(cardBalanceSlotsRepository),
+                new TransactionTemplate(transactionManager),
+                idempotencyService,
+                meterRegistry,
+                transferMode,
+                3,
+                0
+        );
+    }
 }
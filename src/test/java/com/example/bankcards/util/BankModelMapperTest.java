@@ -0,0 +1,79 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.dto.AuthRequest;
+import com.example.bankcards.dto.CardResponse;
+import com.example.bankcards.dto.UserResponse;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.enums.CardStatus;
+import com.example.bankcards.enums.Role;
+import com.example.bankcards.projections.CardSummary;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BankModelMapperTest {
+
+    private final BankModelMapper bankModelMapper = new BankModelMapperImpl();
+
+    @Test
+    void convertToCardResponse_card() {
+        User owner = new User("card_owner", "password", Role.USER);
+        owner.setId(2L);
+        Card card = new Card("encrypted", "hash", "5678", owner,
+                Timestamp.valueOf("2029-09-11 15:05:03.693"), CardStatus.ACTIVE, new BigDecimal("673.24"));
+        card.setId(1L);
+
+        CardResponse response = bankModelMapper.convertToCardResponse(card);
+
+        assertEquals(1L, response.getId());
+        assertEquals(2L, response.getOwnerId());
+        assertEquals("2029-09-11 15:05:03.693", response.getExpiryDate());
+        assertEquals(CardStatus.ACTIVE, response.getStatus());
+        assertEquals(new BigDecimal("673.24"), response.getBalance());
+        assertNull(response.getCardNumber());
+    }
+
+    @Test
+    void convertToCardResponse_cardSummary() {
+        Date expiryDate = new Date(Timestamp.valueOf("2029-09-11 15:05:03.693").getTime());
+        CardSummary card = new CardSummary(1L, 2L, "encrypted", "5678", expiryDate, CardStatus.BLOCKED, BigDecimal.TEN, 0);
+
+        CardResponse response = bankModelMapper.convertToCardResponse(card);
+
+        assertEquals(1L, response.getId());
+        assertEquals(2L, response.getOwnerId());
+        assertEquals("2029-09-11 15:05:03.693", response.getExpiryDate());
+        assertEquals(CardStatus.BLOCKED, response.getStatus());
+        assertNull(response.getCardNumber());
+    }
+
+    @Test
+    void convertToUserResponse() {
+        User user = new User("username", "password", Role.ADMIN);
+        user.setId(3L);
+
+        UserResponse response = bankModelMapper.convertToUserResponse(user);
+
+        assertEquals(3L, response.getId());
+        assertEquals("username", response.getUsername());
+        assertEquals(Role.ADMIN, response.getRole());
+    }
+
+    @Test
+    void convertToUser() {
+        AuthRequest request = new AuthRequest();
+        request.setUsername("username");
+        request.setPassword("password");
+
+        User user = bankModelMapper.convertToUser(request);
+
+        assertEquals("username", user.getUsername());
+        assertEquals("password", user.getPassword());
+        assertNull(user.getId());
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CardNumberCryptoTest {
+
+    private static final String SECRET = "bankrestcardcard";
+    private static final String CARD_NUMBER = "1234567812345678";
+
+    private CardNumberCrypto cardNumberCrypto;
+
+    @BeforeEach
+    void setUp() {
+        cardNumberCrypto = new CardNumberCrypto(SECRET, "bankrestcardhash");
+    }
+
+    @Test
+    void encrypt_isRandomizedAndDecryptable() {
+        String first = cardNumberCrypto.encrypt(CARD_NUMBER);
+        String second = cardNumberCrypto.encrypt(CARD_NUMBER);
+
+        assertNotEquals(first, second);
+        assertTrue(first.length() <= 128);
+        assertEquals(CARD_NUMBER, cardNumberCrypto.decrypt(first));
+        assertEquals(CARD_NUMBER, cardNumberCrypto.decrypt(second));
+    }
+
+    @Test
+    void decrypt_legacyEcbCiphertext() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(SECRET.getBytes(), "AES"));
+        String legacy = Base64.getEncoder().encodeToString(cipher.doFinal(CARD_NUMBER.getBytes()));
+
+        assertEquals(CARD_NUMBER, cardNumberCrypto.decrypt(legacy));
+    }
+
+    @Test
+    void decrypt_tamperedCiphertext() {
+        String encrypted = cardNumberCrypto.encrypt(CARD_NUMBER);
+        char last = encrypted.charAt(encrypted.length() - 3);
+        String tampered = encrypted.substring(0, encrypted.length() - 3) + (last == 'A' ? 'B' : 'A')
+                + encrypted.substring(encrypted.length() - 2);
+
+        assertThrows(RuntimeException.class, () -> cardNumberCrypto.decrypt(tampered));
+    }
+
+    @Test
+    void hash_isDeterministicAndKeyed() {
+        String hash = cardNumberCrypto.hash(CARD_NUMBER);
+
+        assertEquals(64, hash.length());
+        assertEquals(hash, cardNumberCrypto.hash(CARD_NUMBER));
+        assertNotEquals(hash, cardNumberCrypto.hash("1234567812345679"));
+        assertNotEquals(hash, new CardNumberCrypto(SECRET, "otherhashsecret").hash(CARD_NUMBER));
+    }
+
+    @Test
+    void encryptAndDecrypt_concurrentCallsShareCiphersSafely() throws Exception {
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                String cardNumber = String.format("4000%012d", i);
+                results.add(executor.submit(() -> cardNumber.equals(cardNumberCrypto.decrypt(cardNumberCrypto.encrypt(cardNumber)))
+                        && cardNumberCrypto.hash(cardNumber).equals(cardNumberCrypto.hash(cardNumber))));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}